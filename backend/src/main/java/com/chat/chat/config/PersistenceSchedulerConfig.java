@@ -0,0 +1,29 @@
+package com.chat.chat.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Scheduler for background flushes that block on JDBC (message write-behind, presence state).
+ * They used to share the STOMP broker's scheduler, where a slow transaction delays heartbeats.
+ * Not a default candidate, so plain TaskScheduler injection still gets the broker's scheduler;
+ * inject this one with @Qualifier("persistenceTaskScheduler").
+ */
+@Configuration
+public class PersistenceSchedulerConfig {
+    @Value("${chat.persistence.scheduler.pool-size:2}")
+    private int poolSize;
+
+    @Bean(defaultCandidate = false)
+    public ThreadPoolTaskScheduler persistenceTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("persistence-");
+        // Lets the final flushes in @PreDestroy run before the pool is torn down
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        return scheduler;
+    }
+}
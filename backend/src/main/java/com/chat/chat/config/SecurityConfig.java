@@ -10,6 +10,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -57,7 +58,9 @@ public class SecurityConfig {
     private final String[] API_ENDPOINTS_AUTH = {
             "/api/user/**",
             "/api/friendship/**",
-            "/api/conversation/**"
+            "/api/conversation/**",
+            "/api/metrics/**",
+            "/api/attachments/**"
     };
 
     @Bean
@@ -76,6 +79,8 @@ public class SecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth ->
                         auth.requestMatchers(API_ENDPOINTS_NO_AUTH).permitAll()
+                                // Read by <img> tags, which cannot send the bearer token; ids are content hashes
+                                .requestMatchers(HttpMethod.GET, "/api/attachments/*").permitAll()
                                 .requestMatchers(API_ENDPOINTS_AUTH).authenticated()
                                 .anyRequest().authenticated()
                 )
@@ -3,13 +3,14 @@ package com.chat.chat.config.websocket;
 import com.chat.chat.service.MessageSender;
 import com.chat.chat.service.auth.AuthService;
 import com.sun.security.auth.UserPrincipal;
-import io.jsonwebtoken.ExpiredJwtException;
-import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
@@ -17,52 +18,100 @@ import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Slf4j
 @RequiredArgsConstructor
 @Component
 public class CustomChannelInterceptor implements ChannelInterceptor {
+    private static final Set<String> REDACTED_HEADERS = Set.of("authorization", "x-api-key", "passcode", "cookie");
     private final AuthService authService;
     private final MessageSender devMessageSender;
+    private final AtomicLong connectAttempts = new AtomicLong();
+    private final AtomicLong connectRejected = new AtomicLong();
+    private final AtomicLong connectAuthTotalMicros = new AtomicLong();
+    private final AtomicLong connectAuthMaxMicros = new AtomicLong();
+
+    // Frame tracing: off by default; when on, a sample of frames is logged at DEBUG with credentials redacted
+    @Value("${chat.stomp.trace.enabled:false}")
+    private boolean traceEnabled;
+    @Value("${chat.stomp.trace.sample-rate:0.01}")
+    private double traceSampleRate;
 
     @Override
     public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
         var command = accessor != null ? accessor.getCommand() : null;
 
-        log.info("STOMP command: {}", command);
-        if (accessor != null && accessor.toNativeHeaderMap() != null) {
-            accessor.toNativeHeaderMap().forEach((k, v) -> log.info("{}: {}", k, v));
+        if (accessor != null && shouldTrace()) {
+            trace(accessor, channel);
         }
 
         if (command != null && command.equals(StompCommand.CONNECT)) {
             String authHeader = accessor.getFirstNativeHeader("Authorization");
             String apiKey = accessor.getFirstNativeHeader("x-api-key");
 
-            log.warn("API Key received: {}", apiKey);
-            log.warn("Authorization Header received: {}", authHeader);
-
+            connectAttempts.incrementAndGet();
             if (authHeader == null) {
+                connectRejected.incrementAndGet();
                 devMessageSender.sendError(accessor, "Missing Authorization Header (Bearer)");
+                return null;
             }
             if (apiKey == null) {
                 devMessageSender.sendError(accessor, "Missing api key");
             }
 
+            long start = System.nanoTime();
             try {
-                log.debug("Authenticating user with header: {}", authHeader);
                 Authentication authenticatedUser = authService.authenticateUserFromHeaderAuth(authHeader);
+                if (authenticatedUser == null) {
+                    connectRejected.incrementAndGet();
+                    devMessageSender.sendError(accessor, "Invalid or expired token");
+                    return null;
+                }
                 if (accessor.getUser() == null) accessor.setUser(new UserPrincipal(authenticatedUser.getName()));
 
-            } catch (ExpiredJwtException | MalformedJwtException e) {
+            } catch (JwtException e) {
                 log.warn("JWT Error: {}", e.getMessage());
-                log.warn(e.getMessage());
+                connectRejected.incrementAndGet();
                 devMessageSender.sendError(accessor, e.getMessage());
+                return null;
+            } finally {
+                long micros = (System.nanoTime() - start) / 1000;
+                connectAuthTotalMicros.addAndGet(micros);
+                connectAuthMaxMicros.accumulateAndGet(micros, Math::max);
             }
         }
-        log.debug("it reached here");
         return message;
     }
 
+    private boolean shouldTrace() {
+        return traceEnabled && log.isDebugEnabled()
+                && (traceSampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < traceSampleRate);
+    }
+
+    private void trace(StompHeaderAccessor accessor, MessageChannel channel) {
+        Map<String, List<String>> headers = new LinkedHashMap<>(accessor.toNativeHeaderMap());
+        headers.replaceAll((name, values) -> REDACTED_HEADERS.contains(name.toLowerCase()) ? List.of("[redacted]") : values);
+        log.debug("STOMP {} session={} user={} channel={} headers={}", accessor.getCommand(), accessor.getSessionId(),
+                accessor.getUser() != null ? accessor.getUser().getName() : null, channel, headers);
+    }
+
+    public Map<String, Long> getConnectMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        long attempts = connectAttempts.get();
+        metrics.put("attempts", attempts);
+        metrics.put("rejected", connectRejected.get());
+        metrics.put("avgAuthMicros", attempts > 0 ? connectAuthTotalMicros.get() / attempts : 0);
+        metrics.put("maxAuthMicros", connectAuthMaxMicros.get());
+        return metrics;
+    }
+
     @Override
     public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
         ChannelInterceptor.super.postSend(message, channel, sent);
@@ -70,8 +119,9 @@ public class CustomChannelInterceptor implements ChannelInterceptor {
 
     @Override
     public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
-        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
-        log.debug("<- Incoming <- " + accessor.getMessageType() + " <-");
+        if (traceEnabled && log.isTraceEnabled()) {
+            log.trace("<- Incoming <- {} <-", SimpMessageHeaderAccessor.getMessageType(message.getHeaders()));
+        }
     }
 
     @Override
@@ -5,14 +5,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class DestinationStore {
-    private final Map<String, String> activeDestinations = new HashMap<>();
+    private static final String USER_DESTINATION_PREFIX = "/user/";
     private static final Logger logger = LoggerFactory.getLogger(DestinationStore.class);
 
+    private final Map<String, Set<String>> destinationsBySession = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> sessionsByDestination = new ConcurrentHashMap<>();
+
     public void connectWebsocket(String username){
         logger.info("User «" + username + "» connected" );
     }
@@ -20,19 +25,50 @@ public class DestinationStore {
         logger.info("User «" + username + "» disconnected" );
     }
     public void registerDestination(String sessionId, String destination, String username) {
-        logger.info("«" + username + "» subscribed " + destination);
-        activeDestinations.put(sessionId, destination);
+        if (sessionId == null || destination == null) {
+            return;
+        }
+        logger.debug("«{}» subscribed {}", username, destination);
+        destinationsBySession.compute(sessionId, (key, destinations) -> add(destinations, destination));
+        sessionsByDestination.compute(destination, (key, sessions) -> add(sessions, sessionId));
     }
     public void unregisterDestination(String sessionId, String destination, String username) {
-        logger.info("«" +username + "» unsubscribed " + destination);
-        activeDestinations.remove(sessionId);
+        if (sessionId == null || destination == null) {
+            return;
+        }
+        logger.debug("«{}» unsubscribed {}", username, destination);
+        destinationsBySession.computeIfPresent(sessionId, (key, destinations) -> remove(destinations, destination));
+        sessionsByDestination.computeIfPresent(destination, (key, sessions) -> remove(sessions, sessionId));
+    }
+    public void unregisterSession(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        Set<String> destinations = destinationsBySession.remove(sessionId);
+        if (destinations != null) {
+            destinations.forEach(destination ->
+                    sessionsByDestination.computeIfPresent(destination, (key, sessions) -> remove(sessions, sessionId)));
+        }
     }
     public boolean destinationIsActive(String destination) {
-        logger.info(destination + " is active");
-        return activeDestinations.containsValue(destination);
+        return destination != null && sessionsByDestination.containsKey(destination);
+    }
+    public boolean userDestinationIsActive(String username, String destination) {
+        return destinationIsActive(USER_DESTINATION_PREFIX + username + destination);
     }
 
-    public Map<String, String> getActiveDestinations() {
-        return this.activeDestinations;
+    public Map<String, Set<String>> getActiveDestinations() {
+        return Collections.unmodifiableMap(this.sessionsByDestination);
+    }
+
+    // Empty sets are dropped inside compute so containsKey stays an exact "anyone listening" check
+    private static Set<String> add(Set<String> values, String value) {
+        Set<String> result = values != null ? values : ConcurrentHashMap.newKeySet();
+        result.add(value);
+        return result;
+    }
+    private static Set<String> remove(Set<String> values, String value) {
+        values.remove(value);
+        return values.isEmpty() ? null : values;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package com.chat.chat.config.websocket;
+
+import com.chat.chat.service.UserSocketService;
+import com.chat.chat.service.presence.PresenceBroadcaster;
+import com.chat.chat.service.presence.PresenceService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single handler for STOMP session connect/disconnect. Each event makes exactly one presence
+ * transition and then runs its side effects as ordered stages: registry, persist (queue the
+ * state write), broadcast. Work for one user is chained so a user's events apply in arrival
+ * order; different users proceed in parallel on the task scheduler, off the inbound channel.
+ */
+@Component
+@RequiredArgsConstructor
+public class SessionLifecyclePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(SessionLifecyclePipeline.class);
+    // Grace period before an unexpectedly dropped user is reported offline, to absorb reconnects
+    private static final long RECONNECT_GRACE_MS = 2000;
+    private static final String STAGE_TRANSITION = "transition";
+    private static final String STAGE_REGISTRY = "registry";
+    private static final String STAGE_PERSIST = "persist";
+    private static final String STAGE_BROADCAST = "broadcast";
+    private final Map<String, CompletableFuture<Void>> userChains = new ConcurrentHashMap<>();
+    private final Map<String, StageMetrics> stageMetrics = new ConcurrentHashMap<>();
+    private final AtomicLong connectEvents = new AtomicLong();
+    private final AtomicLong disconnectEvents = new AtomicLong();
+    private final AtomicLong onlineTransitions = new AtomicLong();
+    private final AtomicLong offlineTransitions = new AtomicLong();
+    private final WebSocketSessionRegistry webSocketSessionRegistry;
+    private final DestinationStore destinationStore;
+    private final UserSocketService userSocketService;
+    private final PresenceService presenceService;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final TaskScheduler taskScheduler;
+
+    public void connected(String username, String sessionId) {
+        connectEvents.incrementAndGet();
+        enqueue(username, () -> {
+            boolean cameOnline = stage(STAGE_TRANSITION, () -> presenceService.sessionOpened(username));
+            runStage(STAGE_REGISTRY, () -> {
+                webSocketSessionRegistry.registerSession(username, sessionId);
+                destinationStore.connectWebsocket(username);
+            });
+            if (cameOnline) {
+                onlineTransitions.incrementAndGet();
+                runStage(STAGE_PERSIST, () -> presenceService.markOnline(username));
+                runStage(STAGE_BROADCAST, () -> presenceBroadcaster.publishOnline(username));
+            }
+        });
+    }
+
+    public void disconnected(String username, String sessionId, boolean apiLogoutHeader, boolean normalClose) {
+        disconnectEvents.incrementAndGet();
+        enqueue(username, () -> {
+            boolean apiLogout = apiLogoutHeader || isApiLogout(username, sessionId);
+            // Logout already forced the user offline; this only clears whatever is left
+            boolean lastSession = stage(STAGE_TRANSITION, () -> apiLogout || !presenceService.isOnline(username)
+                    ? presenceService.forceOffline(username)
+                    : presenceService.sessionClosed(username));
+            runStage(STAGE_REGISTRY, () -> {
+                webSocketSessionRegistry.removeSession(username, sessionId);
+                userSocketService.sessionClosed(sessionId);
+                destinationStore.unregisterSession(sessionId);
+                if (!webSocketSessionRegistry.hasActiveSession(username)) {
+                    destinationStore.disconnectWebsocket(username);
+                }
+            });
+            if (!lastSession) {
+                return;
+            }
+            if (apiLogout || normalClose) {
+                wentOffline(username);
+            } else {
+                taskScheduler.schedule(() -> enqueue(username, () -> {
+                    if (presenceService.getSessionCount(username) == 0) {
+                        wentOffline(username);
+                    } else {
+                        logger.info("User {} reconnected within the grace period", username);
+                    }
+                }), Instant.now().plusMillis(RECONNECT_GRACE_MS));
+            }
+        });
+    }
+
+    private void wentOffline(String username) {
+        offlineTransitions.incrementAndGet();
+        runStage(STAGE_PERSIST, () -> presenceService.markOffline(username));
+        runStage(STAGE_BROADCAST, () -> presenceBroadcaster.publishOffline(username));
+    }
+
+    private boolean isApiLogout(String username, String sessionId) {
+        return webSocketSessionRegistry.findSessionsByUsername(username).stream()
+                .filter(session -> session.getSessionId().equals(sessionId))
+                .anyMatch(session -> Boolean.TRUE.equals(session.getAttributes().get("api_logout")));
+    }
+
+    private void enqueue(String username, Runnable work) {
+        CompletableFuture<Void> next = userChains.compute(username, (key, tail) -> {
+            CompletableFuture<Void> previous = tail != null ? tail : CompletableFuture.completedFuture(null);
+            return previous.thenRunAsync(() -> {
+                try {
+                    work.run();
+                } catch (Exception e) {
+                    logger.error("Session lifecycle work failed for {}: {}", username, e.getMessage(), e);
+                }
+            }, this::execute);
+        });
+        // Drop the chain once idle; a newer tail stays in place. Registered outside compute because an
+        // already finished task would run the callback inline, re-entering the map on the same key.
+        next.whenComplete((ignored, error) -> userChains.remove(username, next));
+    }
+
+    // TaskScheduler is not an Executor by type; schedule for now to run on its pool
+    private void execute(Runnable task) {
+        taskScheduler.schedule(task, Instant.now());
+    }
+
+    private void runStage(String name, Runnable work) {
+        stage(name, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    private <T> T stage(String name, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            stageMetrics.computeIfAbsent(name, key -> new StageMetrics()).record(System.nanoTime() - start);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connectEvents", connectEvents.get());
+        metrics.put("disconnectEvents", disconnectEvents.get());
+        metrics.put("onlineTransitions", onlineTransitions.get());
+        metrics.put("offlineTransitions", offlineTransitions.get());
+        metrics.put("pendingUsers", userChains.size());
+        Map<String, Object> stages = new LinkedHashMap<>();
+        stageMetrics.forEach((name, stats) -> stages.put(name, stats.snapshot()));
+        metrics.put("stages", stages);
+        return metrics;
+    }
+
+    private static class StageMetrics {
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        void record(long nanos) {
+            runs.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+        }
+
+        Map<String, Long> snapshot() {
+            long count = runs.get();
+            Map<String, Long> snapshot = new LinkedHashMap<>();
+            snapshot.put("runs", count);
+            snapshot.put("avgMicros", count == 0 ? 0 : totalNanos.get() / count / 1000);
+            return snapshot;
+        }
+    }
+}
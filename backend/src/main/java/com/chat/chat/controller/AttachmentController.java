@@ -0,0 +1,89 @@
+package com.chat.chat.controller;
+
+import com.chat.chat.model.Attachment;
+import com.chat.chat.payload.response.ResponseObject;
+import com.chat.chat.security.service.UserDetailsImpl;
+import com.chat.chat.service.attachment.AttachmentService;
+import com.chat.chat.service.attachment.IAttachmentService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+@RestController
+@RequestMapping(path = "/api/attachments")
+@RequiredArgsConstructor
+@Slf4j
+public class AttachmentController {
+    private final IAttachmentService attachmentService;
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> upload(@RequestParam("file") MultipartFile file,
+                                    @AuthenticationPrincipal UserDetailsImpl user) {
+        try {
+            Attachment attachment = attachmentService.store(file.getInputStream(), user.getId());
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new ResponseObject(201, "Upload attachment successfully", attachmentService.toResponse(attachment)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ResponseObject(400, e.getMessage()));
+        } catch (IOException e) {
+            log.error("Failed to store attachment", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ResponseObject(500, "Failed to store attachment"));
+        }
+    }
+
+    // Open to <img> tags without the bearer token, so access rests on the signed, expiring URL that
+    // message and upload responses hand out. Content never changes for an id, so the id is the ETag
+    // and the browser may cache it; private, so shared caches never keep chat images. Range requests
+    // are answered by Spring's resource handling for Resource bodies.
+    @GetMapping("/{id}")
+    public ResponseEntity<Resource> download(@PathVariable String id,
+                                             @RequestParam(required = false) Long expires,
+                                             @RequestParam(required = false) String signature,
+                                             WebRequest request) {
+        if (!attachmentService.isValidUrl(id, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Optional<Attachment> attachment = attachmentService.findById(id);
+        if (attachment.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Path file = attachmentService.pathOf(attachment.get());
+        if (!Files.isReadable(file)) {
+            return ResponseEntity.notFound().build();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+        String extension = AttachmentService.ALLOWED_CONTENT_TYPES.get(attachment.get().getContentType());
+        if (request.checkNotModified(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        // Rows stored before the raster allowlist existed are only offered as downloads
+        boolean inline = extension != null;
+        return ResponseEntity.ok()
+                .eTag(id)
+                .cacheControl(cacheControl)
+                .contentType(inline ? MediaType.parseMediaType(attachment.get().getContentType()) : MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, (inline ? ContentDisposition.inline().filename(id + "." + extension)
+                        : ContentDisposition.attachment().filename(id)).build().toString())
+                .header("Content-Security-Policy", "default-src 'none'; img-src 'self'; sandbox")
+                .header("X-Content-Type-Options", "nosniff")
+                .body(new FileSystemResource(file));
+    }
+}
@@ -1,27 +1,39 @@
 package com.chat.chat.controller;
 
+import com.chat.chat.dto.ConversationSummaryDto;
+import com.chat.chat.dto.PrevMessageDto;
 import com.chat.chat.enums.UserState;
 import com.chat.chat.model.Conversation;
 import com.chat.chat.model.User;
 import com.chat.chat.payload.request.ConversationRequest;
 import com.chat.chat.payload.request.MessageRequest;
 import com.chat.chat.payload.response.ConversationResponse;
+import com.chat.chat.payload.response.MessageImportResponse;
+import com.chat.chat.payload.response.MessagePageResponse;
 import com.chat.chat.payload.response.MessageResponse;
 import com.chat.chat.payload.response.ResponseObject;
 import com.chat.chat.payload.response.UserResponseSecure;
 import com.chat.chat.repository.ConversationRepository;
 import com.chat.chat.service.chat.ChatService;
 import com.chat.chat.service.chatmessage.ChatMessageService;
+import com.chat.chat.service.conversation.ConversationMembershipCache;
 import com.chat.chat.service.conversation.ConversationService;
+import com.chat.chat.service.presence.PresenceBroadcaster;
+import com.chat.chat.service.presence.PresenceService;
 import com.chat.chat.service.user.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.security.Principal;
 import java.util.*;
 import java.security.Principal;
@@ -29,6 +41,7 @@ import java.util.List;
 import java.util.UUID;
 import java.time.Instant;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping(path = "/api/conversation")
@@ -40,6 +53,9 @@ public class ConversationController {
     private final ConversationService conversationService;
     private final ConversationRepository conversationRepository;
     private final ChatMessageService messageService;
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final PresenceService presenceService;
+    private final ConversationMembershipCache membershipCache;
     private final org.springframework.messaging.simp.SimpMessagingTemplate simpMessagingTemplate;
     @GetMapping()
     public ResponseEntity<?> findAllConversations(){
@@ -90,8 +106,14 @@ public class ConversationController {
         }
     }
     @GetMapping("/by-userId/{userId}")
-    public ResponseEntity<?> findAllByUserId(@PathVariable String userId){
+    public ResponseEntity<?> findAllByUserId(@PathVariable String userId,
+                                             @RequestParam(required = false) String view){
         try {
+            // Inbox mode: participants, last message and unread count only, no message history
+            if ("summary".equalsIgnoreCase(view)) {
+                List<ConversationSummaryDto> summaries = conversationService.getConversationSummariesByUserId(UUID.fromString(userId));
+                return ResponseEntity.ok(new ResponseObject(200, "Fetch conversations successfully", summaries));
+            }
             List<ConversationResponse> responseList = conversationService.getAllConversationsByUserId(UUID.fromString(userId));
 
             // Transform each conversation to include enhanced participant info
@@ -196,13 +218,36 @@ public class ConversationController {
 
     }
     @GetMapping("/message/by-id/{id}")
-    public ResponseEntity<?> getMessageListByConversationId(@PathVariable String id){
-        List<MessageResponse> chatMessages = conversationService.getMessages(id);
-        if(chatMessages == null){
-            return ResponseEntity.badRequest().body(new ResponseObject(400, "chatMessages not found"));
+    public ResponseEntity<?> getMessageListByConversationId(@PathVariable String id,
+                                                            @RequestParam(required = false) UUID before,
+                                                            @RequestParam(required = false) Integer limit){
+        // Without paging parameters keep the old full-history response for existing clients
+        if (before == null && limit == null) {
+            List<MessageResponse> chatMessages = conversationService.getMessages(id);
+            if(chatMessages == null){
+                return ResponseEntity.badRequest().body(new ResponseObject(400, "chatMessages not found"));
+            }
+            return ResponseEntity.ok().body(new ResponseObject(200,"Fetch chatMessages successfully", chatMessages));
+        }
+        try {
+            MessagePageResponse page = conversationService.getMessagePage(UUID.fromString(id), before, limit);
+            return ResponseEntity.ok().body(new ResponseObject(200,"Fetch chatMessages successfully", page));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ResponseObject(400, e.getMessage()));
+        }
+    }
+    @GetMapping("/message/previous/{id}")
+    public ResponseEntity<?> fetchPreviousChat(@PathVariable UUID id,
+                                               @RequestParam(required = false) UUID before,
+                                               @RequestParam(required = false) Integer limit,
+                                               Principal principal){
+        try {
+            PrevMessageDto previousChat = chatService.fetchPreviousChat(id, before, limit,
+                    principal != null ? principal.getName() : null);
+            return ResponseEntity.ok().body(new ResponseObject(200,"Fetch previous chatMessages successfully", previousChat));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ResponseObject(400, e.getMessage()));
         }
-        return ResponseEntity.ok().body(new ResponseObject(200,"Fetch chatMessages successfully", chatMessages));
-
     }
 
     @PostMapping("/send-message/{conversationId}")
@@ -213,6 +258,49 @@ public class ConversationController {
         MessageResponse sentMessage = conversationService.sendMessage(conversationId, message);
         return new ResponseEntity<>(sentMessage, HttpStatus.CREATED);
     }
+    @GetMapping("/export/{conversationId}")
+    public ResponseEntity<?> exportMessages(@PathVariable UUID conversationId,
+                                            @RequestParam(defaultValue = "false") boolean gzip,
+                                            Principal principal) {
+        Set<String> members = membershipCache.membersOf(conversationId);
+        if (members.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ResponseObject(404, "Conversation not found"));
+        }
+        if (!members.contains(principal.getName())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(new ResponseObject(403, "Not a participant of this conversation"));
+        }
+
+        String filename = "conversation-" + conversationId + (gzip ? ".ndjson.gz" : ".ndjson");
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024)) {
+                    messageService.exportMessages(conversationId, compressed);
+                }
+            } else {
+                messageService.exportMessages(conversationId, out);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    // NDJSON body: one {"sender", "content", "image", "attachmentId", "dateSent", "dateRead"} object per line
+    @PostMapping(value = "/import/{conversationId}", consumes = {"application/x-ndjson", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<?> importMessages(@PathVariable UUID conversationId,
+                                            HttpServletRequest request,
+                                            Principal principal) {
+        try {
+            MessageImportResponse result = messageService.importMessages(conversationId, principal.getName(),
+                    request.getInputStream());
+            return ResponseEntity.ok(new ResponseObject(200, "Import messages successfully", result));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ResponseObject(400, e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(new ResponseObject(400, "Could not read import body: " + e.getMessage()));
+        }
+    }
     @PostMapping("/create")
     public ResponseEntity<?> createConversation(@RequestBody ConversationRequest conversationRequest)  {
         log.info(conversationRequest.toString());
@@ -231,11 +319,6 @@ public class ConversationController {
                 return;
             }
 
-            UUID conversationId = messageRequest.getConversationId();
-            if (!conversationRepository.existsById(conversationId)) {
-                throw new IllegalArgumentException("Conversation not found");
-            }
-
             chatService.processPrivateMessage(messageRequest);
         } catch (IllegalArgumentException e) {
             log.error("Invalid conversation: {}, error: {}",
@@ -308,17 +391,21 @@ public class ConversationController {
 
         MessageResponse savedMessage = conversationService.sendMessage(conversationId, messageRequest);
 
-        MessageResponse detachedMessage = new MessageResponse(
-                savedMessage.getId(),
-                null, // This will be set later with setSender()
-                savedMessage.getContent(),
-                savedMessage.getImage(),
-                savedMessage.getConversationId(),
-                savedMessage.getDateSent(),
-                savedMessage.getDateDelivered(),
-                savedMessage.getDateRead(),
-                savedMessage.getStates()
-        );
+        // Sender is set below without the roles
+        MessageResponse detachedMessage = MessageResponse.builder()
+                .id(savedMessage.getId())
+                .conversationId(savedMessage.getConversationId())
+                .content(savedMessage.getContent())
+                .image(savedMessage.getImage())
+                .attachmentId(savedMessage.getAttachmentId())
+                .attachmentUrl(savedMessage.getAttachmentUrl())
+                .attachmentWidth(savedMessage.getAttachmentWidth())
+                .attachmentHeight(savedMessage.getAttachmentHeight())
+                .dateSent(savedMessage.getDateSent())
+                .dateDelivered(savedMessage.getDateDelivered())
+                .dateRead(savedMessage.getDateRead())
+                .states(savedMessage.getStates())
+                .build();
 
         // Only include necessary user information without the roles
         if (savedMessage.getSender() != null) {
@@ -360,7 +447,7 @@ public class ConversationController {
                 if (addedUser != null) {
                     // Create system message
                     MessageRequest systemMessage = new MessageRequest("system", conversationId,
-                            addedUser.getFullName() + " joined the group", null);
+                            addedUser.getFullName() + " joined the group", null, null);
 
                     // Save the system message
                     MessageResponse savedSystemMessage = conversationService.sendMessage(conversationId, systemMessage);
@@ -402,7 +489,7 @@ public class ConversationController {
             // Create system message for user leaving
             if (removedUser != null) {
                 MessageRequest systemMessage = new MessageRequest("system", conversationId,
-                        removedUser.getFullName() + " left the group", null);
+                        removedUser.getFullName() + " left the group", null, null);
 
                 // Save the system message
                 MessageResponse savedSystemMessage = conversationService.sendMessage(conversationId, systemMessage);
@@ -517,6 +604,7 @@ public class ConversationController {
                     "system",
                     conversationId,
                     currentUser.getFullName() + " joined the group",
+                    null,
                     null
             );
             conversationService.sendMessage(conversationId, systemMessage);
@@ -548,7 +636,15 @@ public class ConversationController {
                 conversationId);
 
         // Send current online users to the newly joined user
-        chatService.broadcastOnlineUsers();
+        if (principal != null) {
+            presenceBroadcaster.sendSnapshot(principal.getName());
+        }
+    }
+    @MessageMapping("/presence.snapshot")
+    public void requestPresenceSnapshot(Principal principal) {
+        if (principal != null) {
+            presenceBroadcaster.sendSnapshot(principal.getName());
+        }
     }
     @MessageMapping("/request-online-users")
     public void requestOnlineUsers(@Payload String conversationId, Principal principal) {
@@ -569,7 +665,7 @@ public class ConversationController {
 
         // Filter participants who are online
         List<String> onlineUserIds = conversation.getParticipants().stream()
-                .filter(user -> UserState.ONLINE.equals(user.getUserState()))
+                .filter(user -> presenceService.isOnline(user.getUsername()))
                 .map(user -> user.getId().toString())
                 .collect(Collectors.toList());
 
@@ -0,0 +1,56 @@
+package com.chat.chat.controller;
+
+import com.chat.chat.config.websocket.CustomChannelInterceptor;
+import com.chat.chat.config.websocket.SessionLifecyclePipeline;
+import com.chat.chat.payload.response.ResponseObject;
+import com.chat.chat.security.jwt.JwtUtils;
+import com.chat.chat.security.service.UserDetailsCache;
+import com.chat.chat.service.chatmessage.BatchingMessageWriter;
+import com.chat.chat.service.presence.PresenceBroadcaster;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping(path = "/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+    private final PresenceBroadcaster presenceBroadcaster;
+    private final SessionLifecyclePipeline sessionLifecyclePipeline;
+    private final CustomChannelInterceptor channelInterceptor;
+    private final BatchingMessageWriter messageWriter;
+    private final JwtUtils jwtUtils;
+    private final UserDetailsCache userDetailsCache;
+
+    @GetMapping("/presence")
+    public ResponseEntity<?> getPresenceMetrics() {
+        return ResponseEntity.ok(new ResponseObject(200, "Fetch presence metrics successfully", presenceBroadcaster.getMetrics()));
+    }
+
+    @GetMapping("/sessions")
+    public ResponseEntity<?> getSessionMetrics() {
+        return ResponseEntity.ok(new ResponseObject(200, "Fetch session metrics successfully", sessionLifecyclePipeline.getMetrics()));
+    }
+
+    @GetMapping("/connect")
+    public ResponseEntity<?> getConnectMetrics() {
+        return ResponseEntity.ok(new ResponseObject(200, "Fetch connect metrics successfully", channelInterceptor.getConnectMetrics()));
+    }
+
+    @GetMapping("/messages")
+    public ResponseEntity<?> getMessageWriterMetrics() {
+        return ResponseEntity.ok(new ResponseObject(200, "Fetch message writer metrics successfully", messageWriter.getMetrics()));
+    }
+
+    @GetMapping("/jwt")
+    public ResponseEntity<?> getJwtMetrics() {
+        return ResponseEntity.ok(new ResponseObject(200, "Fetch jwt metrics successfully", jwtUtils.getClaimsCacheMetrics()));
+    }
+
+    @GetMapping("/users")
+    public ResponseEntity<?> getUserCacheMetrics() {
+        return ResponseEntity.ok(new ResponseObject(200, "Fetch user cache metrics successfully", userDetailsCache.getMetrics()));
+    }
+}
@@ -3,8 +3,11 @@ package com.chat.chat.controller;
 import com.chat.chat.dto.PasswordDto;
 import com.chat.chat.model.User;
 import com.chat.chat.payload.response.FriendRequestResponse;
+import com.chat.chat.payload.response.PresenceSnapshotResponse;
 import com.chat.chat.payload.response.ResponseObject;
+import com.chat.chat.payload.response.UserPageResponse;
 import com.chat.chat.repository.UserRepository;
+import com.chat.chat.service.presence.PresenceBroadcaster;
 import com.chat.chat.service.user.IUserService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +21,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,6 +31,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class UserController {
     private final IUserService iUserService;
+    private final PresenceBroadcaster presenceBroadcaster;
     @GetMapping()
     public ResponseEntity<?> findAllUsers(){
         List<User> users = iUserService.findAllUser();
@@ -89,9 +94,21 @@ public class UserController {
         }
         return ResponseEntity.ok().body(new ResponseObject(200, "Update password successfully", user));
     }
+    @GetMapping("/presence")
+    public ResponseEntity<?> getPresenceSnapshot(Principal principal) {
+        PresenceSnapshotResponse snapshot = presenceBroadcaster.snapshot(principal.getName());
+        return ResponseEntity.ok(new ResponseObject(200, "Fetch presence snapshot successfully", snapshot));
+    }
     @GetMapping("/non-friends/{userId}")
-    public ResponseEntity<?> findNonFriendUsers(@PathVariable String userId) {
-        List<User> nonFriendUsers = iUserService.findNonFriendUsers(UUID.fromString(userId));
-        return ResponseEntity.ok(new ResponseObject(200, "Fetch non-friend users successfully", nonFriendUsers));
+    public ResponseEntity<?> findNonFriendUsers(@PathVariable String userId,
+                                                @RequestParam(required = false) String q,
+                                                @RequestParam(required = false) UUID cursor,
+                                                @RequestParam(required = false) Integer limit) {
+        try {
+            UserPageResponse nonFriendUsers = iUserService.findNonFriendUsers(UUID.fromString(userId), q, cursor, limit);
+            return ResponseEntity.ok(new ResponseObject(200, "Fetch non-friend users successfully", nonFriendUsers));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ResponseObject(400, e.getMessage()));
+        }
     }
 }
\ No newline at end of file
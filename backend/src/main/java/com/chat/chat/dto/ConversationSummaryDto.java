@@ -0,0 +1,37 @@
+package com.chat.chat.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConversationSummaryDto {
+    private UUID id;
+    private boolean groupConversation;
+    private String groupName;
+    private Instant dateUpdate;
+    private UUID lastMessageId;
+    private String lastMessagePreview;
+    private UUID lastSenderId;
+    private String lastSenderUsername;
+    private long messageCount;
+    private long unreadCount;
+    @Builder.Default
+    private List<ParticipantSummaryDto> participants = new ArrayList<>();
+
+    // Used by the inbox query's constructor expression; participants are attached afterwards
+    public ConversationSummaryDto(UUID id, boolean groupConversation, String groupName, Instant dateUpdate,
+                                  UUID lastMessageId, String lastMessagePreview, UUID lastSenderId,
+                                  String lastSenderUsername, long messageCount, Long unreadCount) {
+        this(id, groupConversation, groupName, dateUpdate, lastMessageId, lastMessagePreview, lastSenderId,
+                lastSenderUsername, messageCount, unreadCount != null ? unreadCount : 0, new ArrayList<>());
+    }
+}
@@ -19,6 +19,10 @@ public class MessageDto {
     private String content;
     private String conversationId;
     private byte[] image;
+    private String attachmentId;
+    private String attachmentUrl;
+    private Integer attachmentWidth;
+    private Integer attachmentHeight;
     private String sender;
     private String dateSent;
     private String dateDelivered;
@@ -0,0 +1,25 @@
+package com.chat.chat.dto;
+
+import com.chat.chat.enums.UserState;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Getter
+@Setter
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ParticipantSummaryDto {
+    @JsonIgnore
+    private UUID conversationId;
+    private UUID id;
+    private String fullName;
+    private String username;
+    private String profilePicture;
+    private UserState userState;
+    private Instant lastOnline;
+}
@@ -1,10 +1,19 @@
 package com.chat.chat.dto;
 
+import lombok.*;
+
 import java.util.List;
 import java.util.UUID;
 
+@Getter
+@Setter
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
 public class PrevMessageDto {
-    private int currentPage;
+    private UUID nextCursor;
+    private boolean hasMore;
     private UUID firstUnreadMessage;
     private long unreadMessageCount;
     private List<MessageDto> chatMessages;
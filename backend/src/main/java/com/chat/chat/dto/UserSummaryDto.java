@@ -0,0 +1,19 @@
+package com.chat.chat.dto;
+
+import lombok.*;
+
+import java.util.UUID;
+
+@Getter
+@Setter
+@ToString
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSummaryDto {
+    private UUID id;
+    private String fullName;
+    private String username;
+    private String email;
+    private String profilePicture;
+}
@@ -3,6 +3,11 @@ package com.chat.chat.enums;
 public enum NotificationType {
     USER_STATE,
     ONLINE_USERS,
+    USER_ONLINE,
+    USER_OFFLINE,
+    PRESENCE_UPDATE,
+    MESSAGE_PERSISTED,
+    MESSAGE_FAILED,
     INCOMING_MESSAGE,
     INCOMING_CALL,
     REJECTED_CALL,
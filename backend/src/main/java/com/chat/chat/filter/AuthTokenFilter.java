@@ -3,6 +3,7 @@ package com.chat.chat.filter;
 
 import com.chat.chat.security.jwt.JwtUtils;
 import com.chat.chat.security.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,6 +11,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -27,6 +29,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     private JwtUtils jwtUtils;
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
+    // Build the principal from token claims instead of loading the user on every request
+    @Value("${spring.jwt.stateless-principal:true}")
+    private boolean statelessPrincipal;
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
@@ -49,10 +54,12 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         return null;
     }
     private void authenticateUser(String jwt, HttpServletRequest request){
-        if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-            String email = jwtUtils.getEmailFromJwt(jwt);
-
-            UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+        Claims claims = jwt != null ? jwtUtils.getValidClaims(jwt) : null;
+        if (claims != null) {
+            UserDetails userDetails = statelessPrincipal ? jwtUtils.getUserDetails(claims) : null;
+            if (userDetails == null) {
+                userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+            }
             UsernamePasswordAuthenticationToken authentication =
                     new UsernamePasswordAuthenticationToken(
                             userDetails,
@@ -1,11 +1,14 @@
 package com.chat.chat.mapper;
 
+import com.chat.chat.dto.MessageDto;
 import com.chat.chat.model.Message;
 import com.chat.chat.payload.response.MessageResponse;
+import com.chat.chat.service.attachment.IAttachmentService;
 import com.chat.chat.service.user.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -14,6 +17,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatMessageMapper implements Function<Message, MessageResponse> {
     private final UserMapper userMapper;
+    private final IAttachmentService attachmentService;
     @Override
     public MessageResponse apply(Message message) {
         if (message == null) {
@@ -31,12 +35,33 @@ public class ChatMessageMapper implements Function<Message, MessageResponse> {
                 .conversationId(String.valueOf(message.getConversation().getId()))
                 .content(message.getContent())
                 .image(message.getImage())
+                .attachmentId(message.getAttachmentId())
+                .attachmentUrl(attachmentService.urlOf(message.getAttachmentId()))
+                .attachmentWidth(message.getAttachmentWidth())
+                .attachmentHeight(message.getAttachmentHeight())
                 .dateSent(message.getDateSent())
                 .dateDelivered(message.getDateDelivered())
                 .dateRead(message.getDateRead())
                 .states(message.getStates())
                 .build();
     }
+    public MessageDto toMessageDto(Message message) {
+        return MessageDto.builder()
+                .id(message.getId())
+                .content(message.getContent())
+                .conversationId(String.valueOf(message.getConversation().getId()))
+                .image(message.getImage() != null ? message.getImage().getBytes(StandardCharsets.UTF_8) : null)
+                .attachmentId(message.getAttachmentId())
+                .attachmentUrl(attachmentService.urlOf(message.getAttachmentId()))
+                .attachmentWidth(message.getAttachmentWidth())
+                .attachmentHeight(message.getAttachmentHeight())
+                .sender(message.getSender() != null ? message.getSender().getUsername() : null)
+                .dateSent(message.getDateSent() != null ? message.getDateSent().toString() : null)
+                .dateDelivered(message.getDateDelivered() != null ? message.getDateDelivered().toString() : null)
+                .dateRead(message.getDateRead() != null ? message.getDateRead().toString() : null)
+                .states(message.getStates())
+                .build();
+    }
     public List<MessageResponse> mapMessageResponse(List<Message> messages) {
         return messages.stream()
                 .map(this::apply)
@@ -16,6 +16,7 @@ import org.springframework.stereotype.Component;
 import java.time.Instant;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.function.Function;
@@ -49,11 +50,6 @@ public class ConversationMapper implements Function<Conversation, ConversationRe
         List<MessageResponse> sortedMessages = messageResponses.stream()
                 .sorted(Comparator.comparing(MessageResponse::getDateSent))
                 .toList();
-        //MessageResponse lastMessage = sortedMessages.get(sortedMessages.size() - 1);
-        MessageResponse lastMessage = null;
-        if (!sortedMessages.isEmpty()) {
-            lastMessage = sortedMessages.get(sortedMessages.size() - 1);
-        }
         return ConversationResponse.builder()
                 .id(conversation.getId())
                 .participants(participants)
@@ -61,19 +57,20 @@ public class ConversationMapper implements Function<Conversation, ConversationRe
                 .groupConversation(conversation.isGroupConversation())
                 .groupName(conversation.getGroupName())
                 .messages(sortedMessages)
-                .dateUpdate(lastMessage != null ? lastMessage.getDateSent() : conversation.getDateUpdate())
+                .dateUpdate(conversation.getDateUpdate())
+                .lastMessageId(conversation.getLastMessageId())
+                .lastMessagePreview(conversation.getLastMessagePreview())
+                .lastSenderId(conversation.getLastSenderId())
+                .messageCount(conversation.getMessageCount())
                 .build();
     }
     public List<ConversationResponse> mapConversations(List<Conversation> conversations) {
+        // One history query for the whole listing instead of one per conversation
+        Map<UUID, List<MessageResponse>> messagesByConversation = conversationService.getMessagesByConversationIds(
+                conversations.stream().map(Conversation::getId).toList());
 
         return conversations.stream().map(c -> {
-            List<MessageResponse> sortedMessage = conversationService.getMessages(String.valueOf(c.getId())).stream()
-                    .sorted(Comparator.comparing(MessageResponse::getDateSent))
-                    .toList();
-            MessageResponse lastMessage = null;
-            if (!sortedMessage.isEmpty()) {
-                lastMessage = sortedMessage.get(sortedMessage.size() - 1);
-            }
+            List<MessageResponse> sortedMessage = messagesByConversation.getOrDefault(c.getId(), List.of());
             List<User> filteredParticipants = (c.getParticipants() != null) ?
                     c.getParticipants().stream()
                             .filter(Objects::nonNull)
@@ -85,7 +82,11 @@ public class ConversationMapper implements Function<Conversation, ConversationRe
                     .groupName(c.getGroupName())
                     .messages(sortedMessage)
                     .participants(filteredParticipants)
-                    .dateUpdate(lastMessage != null ? lastMessage.getDateSent() : c.getDateUpdate())
+                    .dateUpdate(c.getDateUpdate())
+                    .lastMessageId(c.getLastMessageId())
+                    .lastMessagePreview(c.getLastMessagePreview())
+                    .lastSenderId(c.getLastSenderId())
+                    .messageCount(c.getMessageCount())
                     .build();
         }).toList();
     }
@@ -2,22 +2,16 @@ package com.chat.chat.mapper;
 
 import com.chat.chat.dto.FriendRequestDto;
 import com.chat.chat.model.FriendRequest;
-import com.chat.chat.model.User;
-import com.chat.chat.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
 @Component
-@RequiredArgsConstructor
 public class FriendRequestMapper {
-    private final UserRepository userRepository;
+    // sender and receiver are eager associations, already loaded with the request
     public FriendRequestDto toFriendRequestDto(FriendRequest friendRequest){
-        User sender = userRepository.findByUsername(friendRequest.getSender().getUsername());
-        User receiver = userRepository.findByUsername(friendRequest.getReceiver().getUsername());
         return FriendRequestDto.builder()
                 .id(friendRequest.getId())
-                .sender(sender)
-                .receiver(receiver)
+                .sender(friendRequest.getSender())
+                .receiver(friendRequest.getReceiver())
                 .status(friendRequest.getStatus())
                 .build();
     }
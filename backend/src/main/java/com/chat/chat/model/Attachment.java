@@ -0,0 +1,41 @@
+package com.chat.chat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An uploaded file, identified by the hex SHA-256 of its bytes. Identical uploads share one row and
+ * one file on disk; messages refer to it by id instead of carrying the bytes inline.
+ */
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "attachment")
+public class Attachment {
+    @Id
+    @Column(length = 64)
+    private String id;
+    private String contentType;
+    private long size;
+    private Integer width;
+    private Integer height;
+    private Instant createdAt;
+    // Everyone who uploaded these bytes; identical uploads share the row, so there can be several
+    @ElementCollection
+    @CollectionTable(name = "attachment_uploader", joinColumns = @JoinColumn(name = "attachment_id"))
+    @Column(name = "user_id", nullable = false)
+    @Builder.Default
+    private Set<UUID> uploaderIds = new HashSet<>();
+}
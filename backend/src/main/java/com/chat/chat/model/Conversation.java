@@ -1,11 +1,19 @@
 package com.chat.chat.model;
 
+import com.chat.chat.model.id.TimeOrderedUuid;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Entity
 @Builder
@@ -13,10 +21,15 @@ import java.util.UUID;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "conversation")
+@Table(name = "conversation", indexes = {
+        @Index(name = "idx_conversation_date_update", columnList = "date_update"),
+        @Index(name = "idx_conversation_group_date_update", columnList = "group_conversation, date_update")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_conversation_participant_key", columnNames = "participant_key")
+})
 public class Conversation {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
@@ -31,8 +44,47 @@ public class Conversation {
 
     private Instant dateUpdate;
 
+    // Denormalized from chat_message so listings never have to scan it; kept current by ConversationService
+    private UUID lastMessageId;
+    @Column(name = "last_message_preview")
+    private String lastMessagePreview;
+    private UUID lastSenderId;
+    private long messageCount;
+
+    // SHA-256 of the sorted participant ids; only set for direct conversations, groups may share members
+    @Column(name = "participant_key", length = 64)
+    private String participantKey;
+
     public Conversation(List<User> participants) {
         this.participants = participants;
         this.dateUpdate = Instant.now();
     }
+
+    // Only on insert: legacy duplicate direct conversations are left unkeyed and must stay that way on update
+    @PrePersist
+    public void syncParticipantKey() {
+        if (groupConversation || participants == null) {
+            participantKey = null;
+            return;
+        }
+        participantKey = participantKeyOf(participants.stream()
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .toList());
+    }
+
+    public static String participantKeyOf(Collection<UUID> participantIds) {
+        String canonical = participantIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .sorted()
+                .map(UUID::toString)
+                .collect(Collectors.joining(","));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
\ No newline at end of file
@@ -8,7 +8,10 @@ import java.time.Instant;
 
 @Entity
 @Data
-@Table(name = "friend_request")
+@Table(name = "friend_request", indexes = {
+        @Index(name = "idx_friend_request_sender_status", columnList = "sender, status"),
+        @Index(name = "idx_friend_request_receiver_status", columnList = "receiver, status")
+})
 public class FriendRequest {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,41 @@
+package com.chat.chat.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * One directed edge per side of an accepted friend request, so "friends of X" and "are X and Y
+ * friends" are primary-key lookups instead of scans over friend_request.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+// Hibernate lays the embedded primary key out as (friend_id, user_id); this covers the other direction
+@Table(name = "friendship", indexes = {
+        @Index(name = "idx_friendship_user_friend", columnList = "user_id, friend_id")
+})
+public class Friendship {
+    @EmbeddedId
+    private FriendshipId id;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @MapsId("userId")
+    @JoinColumn(name = "user_id")
+    private User user;
+    @ManyToOne(fetch = FetchType.LAZY)
+    @MapsId("friendId")
+    @JoinColumn(name = "friend_id")
+    private User friend;
+    private Instant since;
+
+    public Friendship(User user, User friend, Instant since) {
+        this.id = new FriendshipId(user.getId(), friend.getId());
+        this.user = user;
+        this.friend = friend;
+        this.since = since;
+    }
+}
@@ -0,0 +1,21 @@
+package com.chat.chat.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FriendshipId implements Serializable {
+    @Column(name = "user_id")
+    private UUID userId;
+    @Column(name = "friend_id")
+    private UUID friendId;
+}
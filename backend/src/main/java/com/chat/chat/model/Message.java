@@ -1,6 +1,7 @@
 package com.chat.chat.model;
 
 import com.chat.chat.enums.MessageState;
+import com.chat.chat.model.id.TimeOrderedUuid;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,10 +17,14 @@ import java.util.UUID;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(name = "chat_message")
+@Table(name = "chat_message", indexes = {
+        @Index(name = "idx_chat_message_conversation_date_sent", columnList = "conversation_id, date_sent, id"),
+        @Index(name = "idx_chat_message_conversation_date_read", columnList = "conversation_id, date_read"),
+        @Index(name = "idx_chat_message_attachment", columnList = "attachment_id")
+})
 public class Message {
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
     @ManyToOne
     @JoinColumn(name = "sender_id")
@@ -29,6 +34,11 @@ public class Message {
     private Conversation conversation;
     private String content;
     private String image;
+    // Content-addressed Attachment id plus its dimensions, so listings never join or load the bytes
+    @Column(length = 64)
+    private String attachmentId;
+    private Integer attachmentWidth;
+    private Integer attachmentHeight;
     private Instant createdAt;
 
     private Instant dateSent;
@@ -18,7 +18,9 @@ import java.util.UUID;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_username_id", columnList = "username, id")
+})
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
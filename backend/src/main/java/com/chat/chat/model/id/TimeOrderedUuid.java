@@ -0,0 +1,18 @@
+package com.chat.chat.model.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates UUIDv7 identifiers: a millisecond timestamp prefix followed by random bits, so new
+ * rows land at the right-hand end of the binary(16) primary key instead of scattering across it.
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface TimeOrderedUuid {
+}
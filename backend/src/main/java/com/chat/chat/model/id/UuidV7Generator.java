@@ -0,0 +1,39 @@
+package com.chat.chat.model.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class UuidV7Generator implements BeforeExecutionGenerator {
+    // Unix millis shifted left 12 bits, plus a 12-bit counter for ids minted in the same millisecond
+    private static final AtomicLong LAST = new AtomicLong();
+
+    /**
+     * RFC 9562 version 7: 48-bit Unix millisecond timestamp, version, 12-bit counter (rand_a), variant
+     * and 62 random bits. Ids from this JVM are strictly increasing; a counter overflow borrows the
+     * next millisecond rather than going backwards.
+     */
+    public static UUID next() {
+        long now = System.currentTimeMillis() << 12;
+        long state = LAST.updateAndGet(previous -> Math.max(previous + 1, now));
+        long msb = ((state >>> 12) << 16) | 0x7000L | (state & 0xFFFL);
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -0,0 +1,18 @@
+package com.chat.chat.payload.request;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// One NDJSON line of a history import
+@Data
+@NoArgsConstructor
+public class MessageImportRequest {
+    private String sender;
+    private String content;
+    private String image;
+    private String attachmentId;
+    private Instant dateSent;
+    private Instant dateRead;
+}
@@ -12,4 +12,6 @@ public class MessageRequest {
     private UUID conversationId;
     private String content;
     private String image;
+    // Set after uploading to /api/attachments; preferred over inline image data
+    private String attachmentId;
 }
@@ -0,0 +1,18 @@
+package com.chat.chat.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class AttachmentResponse {
+    private String id;
+    private String contentType;
+    private long size;
+    private Integer width;
+    private Integer height;
+    // Signed and expiring, relative to the server root: /api/attachments/{id}?expires=...&signature=...
+    private String url;
+}
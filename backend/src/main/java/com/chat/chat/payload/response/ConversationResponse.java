@@ -18,4 +18,8 @@ public class ConversationResponse {
     private boolean groupConversation;
     private String groupName;
     private Instant dateUpdate;
+    private UUID lastMessageId;
+    private String lastMessagePreview;
+    private UUID lastSenderId;
+    private long messageCount;
 }
\ No newline at end of file
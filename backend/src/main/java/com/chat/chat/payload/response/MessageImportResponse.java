@@ -0,0 +1,20 @@
+package com.chat.chat.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class MessageImportResponse {
+    private long imported;
+    private long skipped;
+    private int batches;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    // First few rejected lines, as "line N: reason"
+    private List<String> errors;
+}
@@ -0,0 +1,19 @@
+package com.chat.chat.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class MessagePageResponse {
+    // Oldest first, so a page can be prepended to what the client already shows
+    private List<MessageResponse> messages;
+    // Pass back as "before" to load the next (older) page; null when there is nothing left
+    private UUID nextCursor;
+    private boolean hasMore;
+}
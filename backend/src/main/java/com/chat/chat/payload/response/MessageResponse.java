@@ -18,6 +18,11 @@ public class MessageResponse {
     private String conversationId;
     private String content;
     private String image;
+    private String attachmentId;
+    // Signed download URL for attachmentId; issued per response and expires
+    private String attachmentUrl;
+    private Integer attachmentWidth;
+    private Integer attachmentHeight;
     private Instant dateSent;
     private Instant dateDelivered;
     private Instant dateRead;
@@ -0,0 +1,17 @@
+package com.chat.chat.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class PresenceSnapshotResponse {
+    // Apply USER_ONLINE / USER_OFFLINE events with a higher sequence on top of this list
+    private long sequence;
+    private List<UUID> onlineUserIds;
+}
@@ -0,0 +1,20 @@
+package com.chat.chat.payload.response;
+
+import com.chat.chat.dto.UserSummaryDto;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class UserPageResponse {
+    // Ordered by username
+    private List<UserSummaryDto> users;
+    // Pass back as "cursor" to load the next page; null when there is nothing left
+    private UUID nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,28 @@
+package com.chat.chat.repository;
+
+import com.chat.chat.model.Attachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+public interface AttachmentRepository extends JpaRepository<Attachment, String> {
+    @Query("SELECT COUNT(a) > 0 FROM Attachment a JOIN a.uploaderIds u WHERE a.id = :attachmentId AND u = :userId")
+    boolean isUploadedBy(String attachmentId, UUID userId);
+
+    // Already sent in a conversation the user belongs to, so the user has seen it and may forward it
+    @Query("""
+            SELECT COUNT(m) > 0 FROM Message m JOIN m.conversation c JOIN c.participants p
+            WHERE m.attachmentId = :attachmentId AND p.id = :userId
+            """)
+    boolean isSharedWith(String attachmentId, UUID userId);
+
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT IGNORE INTO attachment_uploader (attachment_id, user_id) VALUES (:attachmentId, :userId)
+            """)
+    int addUploader(String attachmentId, UUID userId);
+}
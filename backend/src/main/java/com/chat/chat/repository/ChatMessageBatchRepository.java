@@ -0,0 +1,150 @@
+package com.chat.chat.repository;
+
+import com.chat.chat.enums.MessageState;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.SerializationUtils;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Plain JDBC batch writes to chat_message, for paths that insert many rows at once and do not need
+ * managed entities. Values are bound the same way Hibernate binds the Message mapping.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatMessageBatchRepository {
+    private static final int PREVIEW_LENGTH = 255;
+    private static final String INSERT_MESSAGE_SQL = """
+            INSERT INTO chat_message (id, conversation_id, sender_id, content, image,
+                                      attachment_id, attachment_width, attachment_height,
+                                      created_at, date_sent, date_delivered, date_read, states)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final String COUNT_MESSAGES_SQL = """
+            UPDATE conversation SET message_count = message_count + ? WHERE id = ?
+            """;
+    // Only moves the pointer forward: skipped when the current last message sorts after this one
+    // (date_sent, then id, the same order refreshLastMessage uses), e.g. for a retried row
+    private static final String ADVANCE_LAST_MESSAGE_SQL = """
+            UPDATE conversation c SET
+                c.last_message_id = ?,
+                c.last_message_preview = ?,
+                c.last_sender_id = ?,
+                c.date_update = ?
+            WHERE c.id = ?
+              AND NOT EXISTS (SELECT 1 FROM chat_message m
+                              WHERE m.id = c.last_message_id
+                                AND (m.date_sent > ? OR (m.date_sent = ? AND m.id > ?)))
+            """;
+    // Same order as the SQL above: date_sent, then id as unsigned bytes (binary(16) comparison)
+    private static final Comparator<MessageRow> SEND_ORDER = Comparator
+            .comparing(MessageRow::getDateSent)
+            .thenComparing(MessageRow::getId, (a, b) -> {
+                int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+                return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+            });
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Getter
+    @Builder
+    public static class MessageRow {
+        private final UUID id;
+        private final UUID conversationId;
+        private final UUID senderId;
+        private final String content;
+        private final String image;
+        private final String attachmentId;
+        private final Integer attachmentWidth;
+        private final Integer attachmentHeight;
+        private final Instant createdAt;
+        private final Instant dateSent;
+        private final Instant dateDelivered;
+        private final Instant dateRead;
+        private final List<MessageState> states;
+    }
+
+    public void insertAll(List<MessageRow> rows) {
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setBytes(1, toBytes(row.getId()));
+            ps.setBytes(2, toBytes(row.getConversationId()));
+            ps.setBytes(3, toBytes(row.getSenderId()));
+            ps.setString(4, row.getContent());
+            ps.setString(5, row.getImage());
+            ps.setString(6, row.getAttachmentId());
+            ps.setObject(7, row.getAttachmentWidth());
+            ps.setObject(8, row.getAttachmentHeight());
+            ps.setObject(9, utc(row.getCreatedAt()));
+            ps.setObject(10, utc(row.getDateSent()));
+            ps.setObject(11, utc(row.getDateDelivered()));
+            ps.setObject(12, utc(row.getDateRead()));
+            // Same encoding Hibernate uses for the states collection: a serialized ArrayList
+            ps.setBytes(13, row.getStates() != null ? SerializationUtils.serialize(new ArrayList<>(row.getStates())) : null);
+        });
+    }
+
+    /**
+     * Adds the given rows to each conversation's counter and moves its last-message pointer to the
+     * newest of them, unless the conversation already points at a newer message. Rows may arrive in
+     * any order, e.g. when a retried row is written after newer ones.
+     */
+    public void recordAll(List<MessageRow> rows) {
+        Map<UUID, List<MessageRow>> byConversation = rows.stream()
+                .collect(Collectors.groupingBy(MessageRow::getConversationId, LinkedHashMap::new, Collectors.toList()));
+        jdbcTemplate.batchUpdate(COUNT_MESSAGES_SQL, byConversation.values(), byConversation.size(), (ps, messages) -> {
+            ps.setInt(1, messages.size());
+            ps.setBytes(2, toBytes(messages.get(0).getConversationId()));
+        });
+        List<MessageRow> newest = byConversation.values().stream()
+                .map(messages -> messages.stream().max(SEND_ORDER).orElseThrow())
+                .toList();
+        jdbcTemplate.batchUpdate(ADVANCE_LAST_MESSAGE_SQL, newest, newest.size(), (ps, last) -> {
+            ps.setBytes(1, toBytes(last.getId()));
+            ps.setString(2, previewOf(last));
+            ps.setBytes(3, toBytes(last.getSenderId()));
+            ps.setObject(4, utc(last.getDateSent()));
+            ps.setBytes(5, toBytes(last.getConversationId()));
+            ps.setObject(6, utc(last.getDateSent()));
+            ps.setObject(7, utc(last.getDateSent()));
+            ps.setBytes(8, toBytes(last.getId()));
+        });
+    }
+
+    private static String previewOf(MessageRow row) {
+        String content = row.getContent();
+        if (content == null) {
+            return row.getImage() != null || row.getAttachmentId() != null ? "[image]" : null;
+        }
+        return content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+    }
+
+    // Hibernate writes Instant columns as UTC wall-clock time
+    private static LocalDateTime utc(Instant instant) {
+        return instant != null ? LocalDateTime.ofInstant(instant, ZoneOffset.UTC) : null;
+    }
+
+    // Hibernate maps UUID ids to binary(16) on MySQL, most significant bits first
+    private static byte[] toBytes(UUID id) {
+        if (id == null) {
+            return null;
+        }
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
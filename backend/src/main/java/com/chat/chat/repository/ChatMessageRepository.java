@@ -1,15 +1,96 @@
 package com.chat.chat.repository;
 
 import com.chat.chat.model.Message;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface ChatMessageRepository extends JpaRepository<Message, UUID> {
 
     @Query("SELECT m FROM Message m WHERE m.conversation.id = :conversationId")
     List<Message> findMessagesByConversationId(UUID conversationId);
 
-}
\ No newline at end of file
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sender
+            WHERE m.conversation.id IN :conversationIds
+            ORDER BY m.dateSent ASC, m.id ASC
+            """)
+    List<Message> findMessagesByConversationIdIn(Collection<UUID> conversationIds);
+
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sender
+            WHERE m.conversation.id = :conversationId
+            ORDER BY m.dateSent DESC, m.id DESC
+            """)
+    List<Message> findLatestByConversationId(UUID conversationId, Limit limit);
+
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sender
+            WHERE m.conversation.id = :conversationId
+              AND (m.dateSent < :dateSent OR (m.dateSent = :dateSent AND m.id < :id))
+            ORDER BY m.dateSent DESC, m.id DESC
+            """)
+    List<Message> findBeforeByConversationId(UUID conversationId, Instant dateSent, UUID id, Limit limit);
+
+    // Oldest first over a forward-only cursor; Connector/J only streams row by row with fetch size Integer.MIN_VALUE
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sender
+            WHERE m.conversation.id = :conversationId
+            ORDER BY m.dateSent ASC, m.id ASC
+            """)
+    Stream<Message> streamByConversationId(UUID conversationId);
+
+    @Query("SELECT m.dateSent FROM Message m WHERE m.id = :id AND m.conversation.id = :conversationId")
+    Instant findDateSentById(UUID conversationId, UUID id);
+
+    @Query("""
+            SELECT COUNT(m) FROM Message m
+            WHERE m.conversation.id = :conversationId
+              AND m.dateRead IS NULL
+              AND m.sender.username <> :username
+            """)
+    long countUnreadByConversationId(UUID conversationId, String username);
+
+    @Query("""
+            SELECT m.id FROM Message m
+            WHERE m.conversation.id = :conversationId
+              AND m.dateRead IS NULL
+              AND m.sender.username <> :username
+            ORDER BY m.dateSent ASC, m.id ASC
+            """)
+    List<UUID> findFirstUnreadIdByConversationId(UUID conversationId, String username, Limit limit);
+
+    // Rows from clients that stored base64 images inline, walked by id
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sender
+            WHERE m.image LIKE 'data:%' AND m.id > :afterId
+            ORDER BY m.id
+            """)
+    List<Message> findInlineImagesAfter(UUID afterId, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            UPDATE Message m SET m.image = NULL, m.attachmentId = :attachmentId,
+                m.attachmentWidth = :width, m.attachmentHeight = :height
+            WHERE m.id = :id AND m.image LIKE 'data:%'
+            """)
+    int moveImageToAttachment(UUID id, String attachmentId, Integer width, Integer height);
+
+}
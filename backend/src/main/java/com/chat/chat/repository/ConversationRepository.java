@@ -1,11 +1,19 @@
 package com.chat.chat.repository;
 
+import com.chat.chat.dto.ConversationSummaryDto;
+import com.chat.chat.dto.ParticipantSummaryDto;
+import com.chat.chat.dto.UserSummaryDto;
 import com.chat.chat.model.Conversation;
 import com.chat.chat.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface ConversationRepository extends JpaRepository<Conversation, UUID> {
@@ -23,4 +31,96 @@ public interface ConversationRepository extends JpaRepository<Conversation, UUID
     List<Conversation> findByGroupConversationTrue();
 
     List<Conversation> findAllByParticipantsContaining(User participant);
-}
\ No newline at end of file
+
+    @Query(value = """
+            SELECT c FROM Conversation c JOIN c.participants p
+            WHERE p.id = :userId
+            ORDER BY c.dateUpdate DESC
+            """)
+    List<Conversation> findAllByParticipantIdOrderByDateUpdateDesc(UUID userId);
+
+    List<Conversation> findByGroupConversationTrueOrderByDateUpdateAsc();
+
+    boolean existsByParticipantKey(String participantKey);
+
+    Optional<Conversation> findByParticipantKey(String participantKey);
+
+    @Query("SELECT c.id FROM Conversation c WHERE c.groupConversation = false AND c.participantKey IS NULL")
+    List<UUID> findDirectIdsMissingParticipantKey();
+
+    // Inbox rows read the denormalized last-message columns; only the unread count touches chat_message
+    @Query(value = """
+            SELECT new com.chat.chat.dto.ConversationSummaryDto(
+                c.id, c.groupConversation, c.groupName, c.dateUpdate,
+                c.lastMessageId, c.lastMessagePreview, c.lastSenderId, s.username, c.messageCount,
+                (SELECT COUNT(u) FROM Message u
+                 WHERE u.conversation = c AND u.dateRead IS NULL AND u.sender.id <> :userId))
+            FROM Conversation c JOIN c.participants p
+            LEFT JOIN User s ON s.id = c.lastSenderId
+            WHERE p.id = :userId
+            ORDER BY c.dateUpdate DESC
+            """)
+    List<ConversationSummaryDto> findConversationSummariesByUserId(UUID userId);
+
+    @Query(value = """
+            SELECT new com.chat.chat.dto.ParticipantSummaryDto(
+                c.id, u.id, u.fullName, u.username, u.profilePicture, u.userState, u.lastOnline)
+            FROM Conversation c JOIN c.participants u
+            WHERE c.id IN :conversationIds AND u.username <> 'system'
+            """)
+    List<ParticipantSummaryDto> findParticipantSummaries(Collection<UUID> conversationIds);
+
+    @Query("SELECT p.username FROM Conversation c JOIN c.participants p WHERE c.id = :conversationId")
+    List<String> findParticipantUsernamesById(UUID conversationId);
+
+    @Query(value = """
+            SELECT new com.chat.chat.dto.UserSummaryDto(p.id, p.fullName, p.username, p.email, p.profilePicture)
+            FROM Conversation c JOIN c.participants p
+            WHERE c.id = :conversationId
+            """)
+    List<UserSummaryDto> findParticipantSummariesById(UUID conversationId);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE Conversation c SET
+                c.messageCount = c.messageCount + 1,
+                c.lastMessageId = :messageId,
+                c.lastMessagePreview = :preview,
+                c.lastSenderId = :senderId,
+                c.dateUpdate = :dateSent
+            WHERE c.id = :conversationId
+            """)
+    int recordMessage(UUID conversationId, UUID messageId, String preview, UUID senderId, Instant dateSent);
+
+    // Recomputes the denormalized columns from chat_message; used after deletes and to backfill old rows
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            UPDATE conversation c SET
+                c.message_count = (SELECT COUNT(*) FROM chat_message m WHERE m.conversation_id = c.id),
+                c.last_message_id = (SELECT m.id FROM chat_message m WHERE m.conversation_id = c.id
+                                     ORDER BY m.date_sent DESC, m.id DESC LIMIT 1),
+                c.last_message_preview = (SELECT LEFT(m.content, 255) FROM chat_message m WHERE m.conversation_id = c.id
+                                          ORDER BY m.date_sent DESC, m.id DESC LIMIT 1),
+                c.last_sender_id = (SELECT m.sender_id FROM chat_message m WHERE m.conversation_id = c.id
+                                    ORDER BY m.date_sent DESC, m.id DESC LIMIT 1),
+                c.date_update = COALESCE((SELECT MAX(m.date_sent) FROM chat_message m WHERE m.conversation_id = c.id),
+                                         c.date_update, NOW(6))
+            WHERE c.id = :conversationId
+            """)
+    int refreshLastMessage(UUID conversationId);
+
+    @Query(value = """
+            SELECT c.id FROM Conversation c
+            WHERE c.lastMessageId IS NULL
+              AND (c.dateUpdate IS NULL OR EXISTS (SELECT 1 FROM Message m WHERE m.conversation = c))
+            """)
+    List<UUID> findIdsMissingLastMessage();
+
+    @Query("""
+            SELECT DISTINCT p.username FROM Conversation c JOIN c.participants me JOIN c.participants p
+            WHERE me.username = :username
+            """)
+    List<String> findContactUsernamesByUsername(String username);
+}
@@ -3,11 +3,13 @@ package com.chat.chat.repository;
 import com.chat.chat.enums.FriendRequestStatus;
 import com.chat.chat.model.FriendRequest;
 import com.chat.chat.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 
 public interface FriendRequestRepository extends JpaRepository<FriendRequest, Long> {
     List<FriendRequest> findByReceiverAndStatus(User receiver, FriendRequestStatus status);
@@ -18,4 +20,22 @@ public interface FriendRequestRepository extends JpaRepository<FriendRequest, Lo
     @Query("SELECT fr FROM FriendRequest fr WHERE fr.sender = :user OR fr.receiver = :user")
     List<FriendRequest> findByUserAsSenderOrReceiver(User user);
     Collection<Object> findBySenderAndReceiverAndStatus(User account1, User account2, FriendRequestStatus friendRequestStatus);
+
+    // Both sides of the OR go through the (sender, status) / (receiver, status) indexes
+    @Query("""
+            SELECT CASE WHEN fr.sender.id = :userId THEN fr.receiver.id ELSE fr.sender.id END
+            FROM FriendRequest fr
+            WHERE (fr.sender.id = :userId OR fr.receiver.id = :userId) AND fr.status = :status
+            """)
+    List<UUID> findCounterpartIdsByUserIdAndStatus(UUID userId, FriendRequestStatus status);
+
+    // Requests in this status missing either friendship edge, walked by id so a failing row is not re-read
+    @Query("""
+            SELECT fr FROM FriendRequest fr
+            WHERE fr.status = :status AND fr.id > :afterId
+              AND (NOT EXISTS (SELECT 1 FROM Friendship f WHERE f.id.userId = fr.sender.id AND f.id.friendId = fr.receiver.id)
+                OR NOT EXISTS (SELECT 1 FROM Friendship f WHERE f.id.userId = fr.receiver.id AND f.id.friendId = fr.sender.id))
+            ORDER BY fr.id
+            """)
+    List<FriendRequest> findWithoutFriendshipByStatus(FriendRequestStatus status, long afterId, Limit limit);
 }
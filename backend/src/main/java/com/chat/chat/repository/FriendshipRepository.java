@@ -0,0 +1,32 @@
+package com.chat.chat.repository;
+
+import com.chat.chat.model.Friendship;
+import com.chat.chat.model.FriendshipId;
+import com.chat.chat.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface FriendshipRepository extends JpaRepository<Friendship, FriendshipId> {
+    @Query("SELECT f.friend FROM Friendship f WHERE f.id.userId = :userId")
+    List<User> findFriendsByUserId(UUID userId);
+
+    @Query("SELECT f.id.friendId FROM Friendship f WHERE f.id.userId = :userId")
+    List<UUID> findFriendIdsByUserId(UUID userId);
+
+    @Query("SELECT f.friend.username FROM Friendship f WHERE f.user.username = :username")
+    List<String> findFriendUsernamesByUsername(String username);
+
+    @Modifying
+    @Transactional
+    @Query("""
+            DELETE FROM Friendship f
+            WHERE (f.id.userId = :userId AND f.id.friendId = :friendId)
+               OR (f.id.userId = :friendId AND f.id.friendId = :userId)
+            """)
+    int deleteBetween(UUID userId, UUID friendId);
+}
@@ -1,13 +1,17 @@
 package com.chat.chat.repository;
 
+import com.chat.chat.dto.UserSummaryDto;
+import com.chat.chat.enums.FriendRequestStatus;
 import com.chat.chat.enums.UserState;
 import com.chat.chat.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -55,4 +59,44 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     Byte getSessions(String username);
     @Query("FROM User u WHERE u.userState = :userState")
     List<User> findAllByUserState(@Param("userState") UserState userState);
-}
\ No newline at end of file
+
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    UUID findIdByUsername(String username);
+
+    @Query("SELECT u.id FROM User u WHERE u.username IN :usernames")
+    List<UUID> findIdsByUsernameIn(Collection<String> usernames);
+
+    @Query("SELECT u.username FROM User u WHERE u.id = :id")
+    String findUsernameById(UUID id);
+
+    // Walks idx_users_username_id; friends and pending requests in either direction are anti-joined away
+    @Query("""
+            SELECT new com.chat.chat.dto.UserSummaryDto(u.id, u.fullName, u.username, u.email, u.profilePicture)
+            FROM User u
+            WHERE u.id <> :userId AND u.username <> 'system'
+              AND u.username LIKE :prefix ESCAPE '!'
+              AND NOT EXISTS (SELECT 1 FROM Friendship f WHERE f.id.userId = :userId AND f.id.friendId = u.id)
+              AND NOT EXISTS (SELECT 1 FROM FriendRequest fr
+                              WHERE fr.sender.id = :userId AND fr.receiver.id = u.id AND fr.status = :pending)
+              AND NOT EXISTS (SELECT 1 FROM FriendRequest fr
+                              WHERE fr.receiver.id = :userId AND fr.sender.id = u.id AND fr.status = :pending)
+            ORDER BY u.username, u.id
+            """)
+    List<UserSummaryDto> findNonFriends(UUID userId, String prefix, FriendRequestStatus pending, Limit limit);
+
+    @Query("""
+            SELECT new com.chat.chat.dto.UserSummaryDto(u.id, u.fullName, u.username, u.email, u.profilePicture)
+            FROM User u
+            WHERE u.id <> :userId AND u.username <> 'system'
+              AND u.username LIKE :prefix ESCAPE '!'
+              AND (u.username > :afterUsername OR (u.username = :afterUsername AND u.id > :afterId))
+              AND NOT EXISTS (SELECT 1 FROM Friendship f WHERE f.id.userId = :userId AND f.id.friendId = u.id)
+              AND NOT EXISTS (SELECT 1 FROM FriendRequest fr
+                              WHERE fr.sender.id = :userId AND fr.receiver.id = u.id AND fr.status = :pending)
+              AND NOT EXISTS (SELECT 1 FROM FriendRequest fr
+                              WHERE fr.receiver.id = :userId AND fr.sender.id = u.id AND fr.status = :pending)
+            ORDER BY u.username, u.id
+            """)
+    List<UserSummaryDto> findNonFriendsAfter(UUID userId, String prefix, String afterUsername, UUID afterId,
+                                             FriendRequestStatus pending, Limit limit);
+}
@@ -1,16 +1,26 @@
 package com.chat.chat.security;
 
+import com.chat.chat.security.jwt.JwtUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 @Component
+@RequiredArgsConstructor
 public class CustomLogoutHandler implements LogoutHandler {
+    private final JwtUtils jwtUtils;
     @Override
     public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
+        // Tokens are not looked up per request any more, so the one used to log out has to be denied
+        String headerAuth = request.getHeader("Authorization");
+        if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
+            jwtUtils.revokeToken(headerAuth.substring("Bearer ".length()));
+        }
         SecurityContextHolder.clearContext();
         System.out.println("Logged out!");
     }
@@ -5,54 +5,223 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
+@RequiredArgsConstructor
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+    private static final String USERNAME_CLAIM = "username";
+    private static final String ROLES_CLAIM = "roles";
+    // MessageDigest is not thread-safe and getInstance walks the provider list, so each thread keeps one
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private final TokenDenylist tokenDenylist;
     @Value("${spring.jwt.secret}")
     private String jwtSecret;
     @Value("${spring.jwt.expire}")
     private int jwtExpirationMs;
+    @Value("${spring.jwt.claims-cache-size:10000}")
+    private int claimsCacheSize;
+    private Key key;
+    private JwtParser parser;
+    // SHA-256 of the token -> claims that already passed signature and expiry checks
+    private final Map<String, CachedClaims> claimsCache = new ConcurrentHashMap<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    @AllArgsConstructor
+    private static class CachedClaims {
+        private final Claims claims;
+        private final long expiresAtMillis;
+    }
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parser().setSigningKey(key).build();
+    }
     public String generateJwtToken(Authentication authentication){
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        List<String> roles = userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        Date now = new Date();
         return Jwts.builder()
                 .setId(String.valueOf(userDetails.getId()))
                 .setSubject(userDetails.getEmail())
-                .setExpiration(new Date(new Date().getTime() + jwtExpirationMs))
+                .claim(USERNAME_CLAIM, userDetails.getUsername())
+                .claim(ROLES_CLAIM, roles)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + jwtExpirationMs))
                 .signWith(jwtKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
     private Key jwtKey() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        return key;
     }
     public String getEmailFromJwt(String token) {
-        return Jwts.parser().setSigningKey(jwtKey()).build()
-                .parseClaimsJws(token).getBody().getSubject();
+        return getClaims(token).getSubject();
+    }
+
+    /**
+     * Principal built from verified claims alone, without touching the database. Returns null for tokens
+     * issued before the username and roles claims existed; callers fall back to loading the user.
+     */
+    public UserDetails getUserDetails(Claims claims) {
+        String username = claims.get(USERNAME_CLAIM, String.class);
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        if (username == null || roles == null || claims.getId() == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(role)))
+                .toList();
+        return UserDetailsImpl.builder()
+                .id(UUID.fromString(claims.getId()))
+                .username(username)
+                .email(claims.getSubject())
+                .authorities(authorities)
+                .build();
+    }
+
+    public void revokeToken(String token) {
+        try {
+            String tokenHash = hash(token);
+            Claims claims = getClaims(token, tokenHash);
+            tokenDenylist.revokeToken(tokenHash, claims.getExpiration());
+        } catch (JwtException | IllegalArgumentException e) {
+            // Already unusable, nothing to deny
+        }
+    }
+
+    public void revokeUserTokens(UUID userId) {
+        tokenDenylist.revokeUser(userId != null ? userId.toString() : null);
+    }
+
+    /**
+     * Verified claims for a token. A token seen before is answered from the cache until its own
+     * expiry, skipping the HMAC check and JSON parsing; anything else goes through the parser and
+     * throws the usual JwtException subtypes.
+     */
+    public Claims getClaims(String token) {
+        return getClaims(token, hash(token));
+    }
+
+    // The hash is the cache and denylist key; callers that need both compute it once
+    private Claims getClaims(String token, String cacheKey) {
+        long now = System.currentTimeMillis();
+        CachedClaims cached = claimsCache.get(cacheKey);
+        if (cached != null) {
+            if (now < cached.expiresAtMillis) {
+                cacheHits.incrementAndGet();
+                return cached.claims;
+            }
+            claimsCache.remove(cacheKey, cached);
+        }
+        cacheMisses.incrementAndGet();
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        // Tokens without an expiry are verified every time rather than cached forever
+        if (claims.getExpiration() != null) {
+            makeRoom(now);
+            claimsCache.put(cacheKey, new CachedClaims(claims, claims.getExpiration().getTime()));
+        }
+        return claims;
+    }
+
+    public void evictClaims(String token) {
+        if (token != null && !token.isEmpty()) {
+            claimsCache.remove(hash(token));
+        }
+    }
+
+    public Map<String, Long> getClaimsCacheMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("size", (long) claimsCache.size());
+        metrics.put("maxSize", (long) claimsCacheSize);
+        metrics.put("hits", cacheHits.get());
+        metrics.put("misses", cacheMisses.get());
+        metrics.put("revoked", (long) tokenDenylist.size());
+        return metrics;
+    }
+
+    // Drops expired entries once the cache is full, then arbitrary ones if that was not enough
+    private void makeRoom(long now) {
+        if (claimsCache.size() < claimsCacheSize) {
+            return;
+        }
+        claimsCache.values().removeIf(entry -> entry.expiresAtMillis <= now);
+        Iterator<String> keys = claimsCache.keySet().iterator();
+        while (claimsCache.size() >= claimsCacheSize && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static String hash(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("JWT string is empty");
+        }
+        // digest() resets the instance, so the next call on this thread starts clean
+        byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(digest);
     }
     public String getJwtFromHeader(HttpServletRequest request) {
-        String ContentType = request.getContentType();
-        System.out.println(ContentType);
         String header = request.getHeader("Authorization");
         if (header != null)
         {
-            System.out.println(header);
+            logger.debug("Reading JWT from the Authorization header");
             return header.split(" ")[1].trim();
         }
         return null;
     }
     public boolean validateJwtToken(String authToken) {
+        return getValidClaims(authToken) != null;
+    }
+
+    /**
+     * Claims of a token that is correctly signed, unexpired and not revoked, or null otherwise. The
+     * token is hashed once for both the claims cache and the denylist.
+     */
+    public Claims getValidClaims(String authToken) {
         try {
-            Jwts.parser().setSigningKey(jwtKey()).build().parseClaimsJws(authToken);
-            return true;
+            String tokenHash = hash(authToken);
+            Claims claims = getClaims(authToken, tokenHash);
+            if (tokenDenylist.isRevoked(tokenHash, claims.getId(), claims.getIssuedAt())) {
+                logger.warn("JWT token is revoked");
+                return null;
+            }
+            return claims;
+        } catch (SignatureException e) {
+            logger.error("Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -63,7 +232,7 @@ public class JwtUtils {
             logger.error("JWT claims string is empty: {}", e.getMessage());
         }
 
-        return false;
+        return null;
     }
 
 }
\ No newline at end of file
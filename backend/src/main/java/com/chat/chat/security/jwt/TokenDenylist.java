@@ -0,0 +1,59 @@
+package com.chat.chat.security.jwt;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory revocation for stateless tokens. Single tokens are denied until their own expiry
+ * (logout); a user can also have every token issued before a point in time denied (password
+ * change, deletion, role change). Entries are dropped once no token they cover can still be valid.
+ */
+@Component
+public class TokenDenylist {
+    // token hash -> token expiry
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+    // user id -> tokens issued before this instant are denied
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();
+
+    @Value("${spring.jwt.expire}")
+    private long jwtExpirationMs;
+
+    public void revokeToken(String tokenHash, Date expiresAt) {
+        long now = System.currentTimeMillis();
+        purge(now);
+        revokedTokens.put(tokenHash, expiresAt != null ? expiresAt.getTime() : now + jwtExpirationMs);
+    }
+
+    public void revokeUser(String userId) {
+        if (userId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        purge(now);
+        // iat has whole-second precision, so the cut-off does too: a token issued later in this same
+        // second (a fresh login right after a password change) must stay valid
+        revokedUsers.put(userId, now - now % 1000);
+    }
+
+    public boolean isRevoked(String tokenHash, String userId, Date issuedAt) {
+        if (revokedTokens.containsKey(tokenHash)) {
+            return true;
+        }
+        Long revokedAt = userId != null ? revokedUsers.get(userId) : null;
+        // Tokens issued before iat was added to the claims count as issued at the epoch
+        return revokedAt != null && (issuedAt == null || issuedAt.getTime() < revokedAt);
+    }
+
+    public int size() {
+        return revokedTokens.size() + revokedUsers.size();
+    }
+
+    private void purge(long now) {
+        revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        revokedUsers.values().removeIf(revokedAt -> revokedAt + jwtExpirationMs <= now);
+    }
+}
@@ -0,0 +1,88 @@
+package com.chat.chat.security.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loaded users, reachable by email and by username since logins and tokens may carry either: each
+ * user is stored under both keys. Entries expire a fixed time after loading and the cache is size
+ * bounded; anything that changes a user's credentials, roles or existence must call invalidate.
+ */
+@Component
+public class UserDetailsCache {
+    @Value("${chat.users.cache.max-size:10000}")
+    private long maxSize;
+    @Value("${chat.users.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+    private Cache<String, UserDetailsImpl> users;
+
+    @PostConstruct
+    public void init() {
+        users = Caffeine.newBuilder()
+                // Two keys per user
+                .maximumSize(maxSize * 2)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public UserDetailsImpl get(String credential) {
+        return credential != null ? users.getIfPresent(credential) : null;
+    }
+
+    public void put(UserDetailsImpl user) {
+        keysOf(user.getEmail(), user.getUsername()).forEach(key -> users.put(key, user));
+    }
+
+    /**
+     * Drops the user now and, inside a transaction, again after commit, so a load racing the
+     * uncommitted change cannot put the old row back.
+     */
+    public void invalidate(String email, String username) {
+        List<String> keys = keysOf(email, username);
+        users.invalidateAll(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    users.invalidateAll(keys);
+                }
+            });
+        }
+    }
+
+    public Map<String, Long> getMetrics() {
+        CacheStats stats = users.stats();
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("size", users.estimatedSize());
+        metrics.put("maxSize", maxSize * 2);
+        metrics.put("ttlSeconds", ttlSeconds);
+        metrics.put("hits", stats.hitCount());
+        metrics.put("misses", stats.missCount());
+        metrics.put("evictions", stats.evictionCount());
+        return metrics;
+    }
+
+    private static List<String> keysOf(String email, String username) {
+        List<String> keys = new ArrayList<>(2);
+        if (email != null) {
+            keys.add(email);
+        }
+        if (username != null && !username.equals(email)) {
+            keys.add(username);
+        }
+        return keys;
+    }
+}
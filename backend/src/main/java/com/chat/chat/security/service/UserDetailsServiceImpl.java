@@ -13,13 +13,20 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        UserDetailsImpl cached = userDetailsCache.get(email);
+        if (cached != null) {
+            return cached;
+        }
         User user = userRepository.findByEmailOrUsername(email);
         if(user == null) {
             throw new UsernameNotFoundException("User not found");
         }
-        return UserDetailsImpl.build(user);
+        UserDetailsImpl userDetails = (UserDetailsImpl) UserDetailsImpl.build(user);
+        userDetailsCache.put(userDetails);
+        return userDetails;
     }
 }
\ No newline at end of file
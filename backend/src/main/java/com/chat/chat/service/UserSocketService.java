@@ -4,54 +4,98 @@ import com.chat.chat.dto.UserStateDto;
 import com.chat.chat.enums.UserState;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.user.SimpSession;
 import org.springframework.messaging.simp.user.SimpUser;
 import org.springframework.messaging.simp.user.SimpUserRegistry;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class UserSocketService {
-    private final Set<UserStateDto> userSocketDTOS = new HashSet<>();
+    private final Map<String, UserStateDto> userSocketDTOS = new ConcurrentHashMap<>();
+    // destination -> (sessionId -> username), so subscriber lookups never scan the user registry
+    private final Map<String, Map<String, String>> subscribersByDestination = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> destination), to resolve UNSUBSCRIBE frames and clean up on disconnect
+    private final Map<String, Map<String, String>> subscriptionsBySession = new ConcurrentHashMap<>();
     @Autowired
     SimpUserRegistry userRegistry;
     public UserStateDto findUserSocketByUsername(String username) {
-        return
-                userSocketDTOS.stream()
-                        .filter(userState -> userState.getUsername().equals(username))
-                        .findAny()
-                        .orElse(null);
+        return userSocketDTOS.get(username);
     }
     public void updateStatus(String username, UserState userState) {
-        UserStateDto userSocketDTO = findUserSocketByUsername(username);
-        if (userSocketDTO != null) {
+        userSocketDTOS.compute(username, (key, userSocketDTO) -> {
+            if (userSocketDTO == null) {
+                return new UserStateDto(username, userState);
+            }
             userSocketDTO.setUserState(userState);
-        } else {
-            userSocketDTOS.add(
-                    new UserStateDto(username, userState)
-            );
-        }
+            return userSocketDTO;
+        });
     }
     public void removeByUsername(String username) {
-        userSocketDTOS.removeIf(userSocketDTO -> userSocketDTO.getUsername().equals(username));
+        userSocketDTOS.remove(username);
+    }
+
+    public void subscribed(String sessionId, String subscriptionId, String destination, String username) {
+        if (sessionId == null || subscriptionId == null || destination == null || username == null) {
+            return;
+        }
+        subscriptionsBySession.computeIfAbsent(sessionId, key -> new ConcurrentHashMap<>()).put(subscriptionId, destination);
+        // Insert inside compute so a concurrent removal cannot drop the map we are adding to
+        subscribersByDestination.compute(destination, (key, sessions) -> {
+            Map<String, String> subscribers = sessions != null ? sessions : new ConcurrentHashMap<>();
+            subscribers.put(sessionId, username);
+            return subscribers;
+        });
+    }
+
+    /**
+     * @return the destination the session stopped listening to, or null if it still holds another
+     * subscription to it
+     */
+    public String unsubscribed(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return null;
+        }
+        Map<String, String> subscriptions = subscriptionsBySession.get(sessionId);
+        String destination = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+        // The same session may still hold another subscription to this destination
+        if (destination != null && !subscriptions.containsValue(destination)) {
+            removeSubscriber(destination, sessionId);
+            return destination;
+        }
+        return null;
+    }
+
+    public void sessionClosed(String sessionId) {
+        Map<String, String> subscriptions = subscriptionsBySession.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(destination -> removeSubscriber(destination, sessionId));
+        }
     }
+
+    private void removeSubscriber(String destination, String sessionId) {
+        subscribersByDestination.computeIfPresent(destination, (key, sessions) -> {
+            sessions.remove(sessionId);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
     public List<UserStateDto> getSubscribedSocketUsersByDestination(String destination) {
-        return userRegistry.findSubscriptions(subscription -> subscription.getDestination().equals(destination))
-                .stream()
-                .map(simpSubscription -> {
-                    SimpSession simpSession = simpSubscription.getSession();
-                    SimpUser simpUser = simpSession.getUser();
-                    UserStateDto userSocketDTO = findUserSocketByUsername(simpUser.getName());
+        Map<String, String> sessions = subscribersByDestination.getOrDefault(destination, Map.of());
+        return new LinkedHashSet<>(sessions.values()).stream()
+                .map(username -> {
+                    UserStateDto userSocketDTO = findUserSocketByUsername(username);
                     if (userSocketDTO != null) {
                         return userSocketDTO;
                     }
-                    return new UserStateDto(simpUser.getName(), UserState.ONLINE);
+                    return new UserStateDto(username, UserState.ONLINE);
                 })
                 .collect(Collectors.toList());
     }
@@ -62,4 +106,4 @@ public class UserSocketService {
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,305 @@
+package com.chat.chat.service.attachment;
+
+import com.chat.chat.model.Attachment;
+import com.chat.chat.payload.request.MessageRequest;
+import com.chat.chat.payload.response.AttachmentResponse;
+import com.chat.chat.repository.AttachmentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed attachment store on the local filesystem. Uploads are hashed while they are
+ * copied to a temp file and then moved to {dir}/ab/cd/{sha256}; a second upload of the same bytes
+ * finds the file and row already there and is dropped. Every uploader is recorded, and only they
+ * (or members of a conversation it was already sent in) may attach it to a message.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttachmentService implements IAttachmentService {
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    // Raster formats browsers render as plain images; anything scriptable (SVG, HTML) never gets stored
+    public static final Map<String, String> ALLOWED_CONTENT_TYPES = Map.of(
+            "image/png", "png",
+            "image/jpeg", "jpg",
+            "image/gif", "gif",
+            "image/bmp", "bmp");
+    private static final String URL_SIGNATURE_ALGORITHM = "HmacSHA256";
+    private static final Pattern DATA_URL_PATTERN = Pattern.compile("^data:([\\w.+-]+/[\\w.+-]+)?(;[^,]*)?;base64,");
+    private final AttachmentRepository attachmentRepository;
+    private final PlatformTransactionManager transactionManager;
+    @Value("${chat.attachments.dir:data/attachments}")
+    private String dir;
+    @Value("${chat.attachments.max-size-bytes:10485760}")
+    private long maxSizeBytes;
+    @Value("${chat.attachments.url-secret:${spring.jwt.secret}}")
+    private String urlSecret;
+    @Value("${chat.attachments.url-ttl-seconds:86400}")
+    private long urlTtlSeconds;
+    private Path root;
+    private SecretKeySpec urlKey;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(dir).toAbsolutePath().normalize();
+        Files.createDirectories(root.resolve("tmp"));
+        urlKey = new SecretKeySpec(urlSecret.getBytes(StandardCharsets.UTF_8), URL_SIGNATURE_ALGORITHM);
+    }
+
+    @Override
+    public Attachment store(InputStream content, UUID uploaderId) throws IOException {
+        Attachment attachment = store(content);
+        if (uploaderId != null) {
+            attachmentRepository.addUploader(attachment.getId(), uploaderId);
+        }
+        return attachment;
+    }
+
+    private Attachment store(InputStream content) throws IOException {
+        Path temp = Files.createTempFile(root.resolve("tmp"), "upload-", ".part");
+        try {
+            MessageDigest sha256 = sha256();
+            long size = 0;
+            try (InputStream in = content; OutputStream out = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSizeBytes) {
+                        throw new IllegalArgumentException("Attachment is larger than " + maxSizeBytes + " bytes");
+                    }
+                    sha256.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (size == 0) {
+                throw new IllegalArgumentException("Attachment is empty");
+            }
+            String id = HexFormat.of().formatHex(sha256.digest());
+
+            Optional<Attachment> existing = attachmentRepository.findById(id);
+            if (existing.isPresent() && Files.exists(pathOf(existing.get()))
+                    && ALLOWED_CONTENT_TYPES.containsKey(existing.get().getContentType())) {
+                return existing.get();
+            }
+            // The type comes from the decoder, never from the client
+            ImageInfo image = readImageInfo(temp);
+            if (image == null || !ALLOWED_CONTENT_TYPES.containsKey(image.contentType)) {
+                throw new IllegalArgumentException("Only PNG, JPEG, GIF and BMP images are supported");
+            }
+            String contentType = image.contentType;
+            Path target = pathOf(id);
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // A concurrent upload of the same bytes got there first
+            }
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+            Attachment attachment = Attachment.builder()
+                    .id(id)
+                    .contentType(contentType)
+                    .size(size)
+                    .width(image.width)
+                    .height(image.height)
+                    .createdAt(Instant.now())
+                    .build();
+            // Flushed in a transaction of its own, so a concurrent upload of the same bytes fails here
+            // rather than at the commit of a caller's transaction (sendMessage) that cannot recover
+            TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+            requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            try {
+                return requiresNew.execute(status -> attachmentRepository.saveAndFlush(attachment));
+            } catch (DataIntegrityViolationException e) {
+                return attachmentRepository.findById(id).orElseThrow(() -> e);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Attachment storeDataUrl(String dataUrl, UUID uploaderId) throws IOException {
+        var matcher = DATA_URL_PATTERN.matcher(dataUrl);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Only base64 data URLs are supported");
+        }
+        byte[] encoded = dataUrl.substring(matcher.end()).getBytes(StandardCharsets.US_ASCII);
+        return store(Base64.getMimeDecoder().wrap(new ByteArrayInputStream(encoded)), uploaderId);
+    }
+
+    @Override
+    public Optional<Attachment> findById(String id) {
+        if (id == null || !ID_PATTERN.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        return attachmentRepository.findById(id);
+    }
+
+    @Override
+    public Optional<Attachment> findAttachable(String id, UUID userId) {
+        return findById(id).filter(attachment -> userId != null
+                && (attachmentRepository.isUploadedBy(attachment.getId(), userId)
+                || attachmentRepository.isSharedWith(attachment.getId(), userId)));
+    }
+
+    @Override
+    public Path pathOf(Attachment attachment) {
+        return pathOf(attachment.getId());
+    }
+
+    /**
+     * The attachment a new message should point at: the one named by attachmentId, if the sender may
+     * attach it, or one created from an inline data URL (which is then cleared from the request so it
+     * is not stored in the message row).
+     */
+    @Override
+    public Attachment resolveForMessage(MessageRequest request, UUID senderId) {
+        if (request.getAttachmentId() != null) {
+            // Same answer whether the id is unknown or not the sender's, so ids cannot be probed
+            return findAttachable(request.getAttachmentId(), senderId)
+                    .orElseThrow(() -> new IllegalArgumentException("Attachment not found"));
+        }
+        String image = request.getImage();
+        if (image == null || !image.startsWith("data:")) {
+            return null;
+        }
+        try {
+            Attachment attachment = storeDataUrl(image, senderId);
+            request.setImage(null);
+            request.setAttachmentId(attachment.getId());
+            return attachment;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid image data: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Download URL for an attachment, relative to the server root. It carries an expiry and an HMAC
+     * over id and expiry, so only clients that were handed the URL can fetch the file, and only for a
+     * while. The expiry is rounded up to whole TTL windows, so the URL (and the browser cache entry
+     * behind it) stays the same for at least one window.
+     */
+    @Override
+    public String urlOf(String attachmentId) {
+        if (attachmentId == null) {
+            return null;
+        }
+        long now = Instant.now().getEpochSecond();
+        long expires = (now / urlTtlSeconds + 2) * urlTtlSeconds;
+        return "/api/attachments/" + attachmentId + "?expires=" + expires + "&signature=" + sign(attachmentId, expires);
+    }
+
+    @Override
+    public boolean isValidUrl(String attachmentId, Long expires, String signature) {
+        if (attachmentId == null || expires == null || signature == null
+                || expires < Instant.now().getEpochSecond()) {
+            return false;
+        }
+        return MessageDigest.isEqual(sign(attachmentId, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(String attachmentId, long expires) {
+        try {
+            Mac mac = Mac.getInstance(URL_SIGNATURE_ALGORITHM);
+            mac.init(urlKey);
+            byte[] signature = mac.doFinal((attachmentId + ":" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public AttachmentResponse toResponse(Attachment attachment) {
+        return AttachmentResponse.builder()
+                .id(attachment.getId())
+                .contentType(attachment.getContentType())
+                .size(attachment.getSize())
+                .width(attachment.getWidth())
+                .height(attachment.getHeight())
+                .url(urlOf(attachment.getId()))
+                .build();
+    }
+
+    private Path pathOf(String id) {
+        return root.resolve(id.substring(0, 2)).resolve(id.substring(2, 4)).resolve(id);
+    }
+
+    @AllArgsConstructor
+    private static class ImageInfo {
+        private final String contentType;
+        private final int width;
+        private final int height;
+    }
+
+    // Reads only the image header; returns null for formats ImageIO does not know
+    private ImageInfo readImageInfo(Path file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                String[] mimeTypes = reader.getOriginatingProvider().getMIMETypes();
+                String contentType = mimeTypes != null && mimeTypes.length > 0
+                        ? mimeTypes[0]
+                        : "image/" + reader.getFormatName().toLowerCase();
+                return new ImageInfo(contentType, reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            log.debug("Could not read image header: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.chat.chat.service.attachment;
+
+import com.chat.chat.model.Attachment;
+import com.chat.chat.payload.request.MessageRequest;
+import com.chat.chat.payload.response.AttachmentResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IAttachmentService {
+    Attachment store(InputStream content, UUID uploaderId) throws IOException;
+    Attachment storeDataUrl(String dataUrl, UUID uploaderId) throws IOException;
+    Optional<Attachment> findById(String id);
+    Optional<Attachment> findAttachable(String id, UUID userId);
+    Path pathOf(Attachment attachment);
+    Attachment resolveForMessage(MessageRequest request, UUID senderId);
+    String urlOf(String attachmentId);
+    boolean isValidUrl(String attachmentId, Long expires, String signature);
+    AttachmentResponse toResponse(Attachment attachment);
+}
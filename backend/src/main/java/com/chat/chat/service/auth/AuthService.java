@@ -4,24 +4,23 @@ import com.chat.chat.config.websocket.WebSocketSessionRegistry;
 import com.chat.chat.enums.Role;
 import com.chat.chat.enums.UserState;
 import com.chat.chat.mapper.UserMapper;
-import com.chat.chat.model.Conversation;
 import com.chat.chat.model.User;
 import com.chat.chat.payload.request.LoginRequest;
 import com.chat.chat.payload.request.RegisterRequest;
 import com.chat.chat.payload.response.JwtResponse;
 import com.chat.chat.payload.response.ResponseObject;
-import com.chat.chat.repository.ConversationRepository;
 import com.chat.chat.repository.UserRepository;
 import com.chat.chat.security.jwt.JwtUtils;
 import com.chat.chat.security.service.UserDetailsImpl;
 import com.chat.chat.security.service.UserDetailsServiceImpl;
-import com.chat.chat.service.chat.ChatService;
+import com.chat.chat.service.presence.PresenceBroadcaster;
+import com.chat.chat.service.presence.PresenceService;
 import com.chat.chat.service.user.UserService;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -40,19 +39,17 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AuthService implements IAuthService {
     private final UserRepository userRepository;
-    private final ConversationRepository conversationRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JwtUtils jwtUtils;
     private final UserMapper userMapper;
     private final WebSocketSessionRegistry webSocketSessionRegistry;
+    private final PresenceService presenceService;
+    private final PresenceBroadcaster presenceBroadcaster;
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
     @Autowired
     private UserService userService;
-    @Autowired
-    @Lazy
-    private ChatService chatService;
     private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
     @Override
     public ResponseEntity<?> registerUser(RegisterRequest registerRequest) {
@@ -99,6 +96,12 @@ public class AuthService implements IAuthService {
         }
     }
 
+    /**
+     * STOMP CONNECT authentication: verifies the token and returns the principal, nothing else. No
+     * user row is written here; the ONLINE state and last-online time are queued by the session
+     * lifecycle pipeline once the session is connected. The security context is left alone because
+     * inbound channel threads are pooled and shared between sessions.
+     */
     @Override
     public Authentication authenticateUserFromHeaderAuth(String headerAuth) {
         String bearer = "Bearer ";
@@ -106,23 +109,22 @@ public class AuthService implements IAuthService {
             return null;
         }
         var jwtToken = headerAuth.substring(bearer.length());
-        var email = jwtUtils.getEmailFromJwt(jwtToken);
-        if((email != null || SecurityContextHolder.getContext().getAuthentication() != null) && jwtUtils.validateJwtToken(jwtToken)){
-            UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-            userService.updateUserStateAndLastLogin(userDetails.getUsername(), UserState.ONLINE, Instant.now());
-            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-            SecurityContextHolder.getContext().setAuthentication(authToken);
-
+        Claims claims = jwtUtils.getValidClaims(jwtToken);
+        if (claims == null) {
+            return null;
+        }
+        UserDetails userDetails = jwtUtils.getUserDetails(claims);
+        if (userDetails == null) {
+            userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
         }
-        return SecurityContextHolder.getContext().getAuthentication();
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
     }
 
     @Override
     public ResponseEntity<?> logout(String username) {
         try {
             // Mark user OFFLINE and reset sessions
-            userService.updateUserStateAndLastLogin(username, UserState.OFFLINE, Instant.now());
-            userService.resetUserSessions(username);
+            presenceService.forceOffline(username);
 
             // Set api_logout flag in active sessions
             webSocketSessionRegistry.findSessionsByUsername(username)
@@ -132,8 +134,7 @@ public class AuthService implements IAuthService {
 
             logger.info("User {} logged out, sessions reset, broadcasting offline state", username);
 
-            chatService.broadcastOnlineUsers();
-            broadcastUserOfflineToConversations(username);
+            presenceBroadcaster.publishOffline(username);
             return ResponseEntity.ok(new ResponseObject(200, "Logged out successfully", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -141,18 +142,4 @@ public class AuthService implements IAuthService {
         }
     }
 
-    private void broadcastUserOfflineToConversations(String username) {
-        try {
-            User user = userRepository.findByUsername(username);
-            if (user != null) {
-                List<Conversation> userConversations = conversationRepository.findAllByParticipantsContaining(user);
-                for (Conversation conversation : userConversations) {
-                    chatService.broadcastConversationOnlineUsers(conversation.getId());
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-}
\ No newline at end of file
+}
@@ -1,25 +1,37 @@
 package com.chat.chat.service.chat;
 
+import com.chat.chat.config.websocket.DestinationStore;
 import com.chat.chat.dto.*;
-import com.chat.chat.enums.UserState;
+import com.chat.chat.enums.MessageState;
+import com.chat.chat.mapper.ChatMessageMapper;
 import com.chat.chat.mapper.ConversationMapper;
 import com.chat.chat.mapper.MessageMapper;
+import com.chat.chat.mapper.UserMapper;
+import com.chat.chat.model.Attachment;
 import com.chat.chat.model.Conversation;
 import com.chat.chat.model.Message;
 import com.chat.chat.model.User;
+import com.chat.chat.model.id.UuidV7Generator;
 import com.chat.chat.payload.request.MessageRequest;
 import com.chat.chat.payload.response.ConversationResponse;
 import com.chat.chat.payload.response.MessageResponse;
+import com.chat.chat.repository.ChatMessageBatchRepository.MessageRow;
 import com.chat.chat.repository.ChatMessageRepository;
 import com.chat.chat.repository.ConversationRepository;
 import com.chat.chat.repository.UserRepository;
 import com.chat.chat.service.UserSocketService;
+import com.chat.chat.service.attachment.IAttachmentService;
+import com.chat.chat.service.chatmessage.BatchingMessageWriter;
+import com.chat.chat.service.conversation.ConversationMembershipCache;
 import com.chat.chat.service.conversation.ConversationService;
+import com.chat.chat.service.presence.PresenceAudienceIndex;
+import com.chat.chat.service.presence.PresenceService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Service;
@@ -40,6 +52,13 @@ public class ChatService implements IChatService {
     private final SimpMessagingTemplate simpMessagingTemplate;
     private final UserSocketService userSocketService;
     private final UserRepository userRepository;
+    private final ChatMessageMapper chatMessageMapper;
+    private final PresenceService presenceService;
+    private final PresenceAudienceIndex presenceAudienceIndex;
+    private final DestinationStore destinationStore;
+    private final ConversationMembershipCache membershipCache;
+    private final BatchingMessageWriter messageWriter;
+    private final IAttachmentService attachmentService;
 
 
     @Override
@@ -66,11 +85,16 @@ public class ChatService implements IChatService {
     @Override
     public void createAndSendConversation(List<User> users, StompHeaderAccessor accessor) {
         Conversation newConversation = conversationRepository.save(new Conversation(users));
+        presenceAudienceIndex.evict(users);
+        membershipCache.evict(newConversation.getId());
         Principal senderPrincipal = Objects.requireNonNull(accessor.getUser());
         String senderUsername = Objects.requireNonNull(senderPrincipal.getName());
-        simpMessagingTemplate.convertAndSend("/topic/conversation." + newConversation.getId(),
-                "[" + getTimestamp() + "]:" + senderUsername + ":" + accessor.getMessage()
-        );
+        String topic = "/topic/conversation." + newConversation.getId();
+        if (destinationStore.destinationIsActive(topic)) {
+            simpMessagingTemplate.convertAndSend(topic,
+                    "[" + getTimestamp() + "]:" + senderUsername + ":" + accessor.getMessage()
+            );
+        }
 
 
     }
@@ -95,18 +119,48 @@ public class ChatService implements IChatService {
                     .states(null)
                     .build();
             messageRepository.save(messageToSave);
+            conversationService.recordMessage(messageToSave);
             return MessageMapper.INSTANCE.toDto(messageToSave);
         }
         return null;
     }
 
     @Override
-    public PrevMessageDto fetchPreviousChat(UUID conversationId, int page, String currentUser) {
-        return null;
+    public PrevMessageDto fetchPreviousChat(UUID conversationId, UUID before, Integer limit, String currentUser) {
+        int size = ConversationService.resolvePageSize(limit);
+        List<Message> page = conversationService.findMessagePage(conversationId, before, size);
+        boolean hasMore = page.size() > size;
+        if (hasMore) {
+            page = page.subList(0, size);
+        }
+        List<MessageDto> chatMessages = new ArrayList<>(page.stream().map(chatMessageMapper::toMessageDto).toList());
+        Collections.reverse(chatMessages);
+
+        UUID firstUnread = null;
+        long unreadCount = 0;
+        if (currentUser != null) {
+            unreadCount = messageRepository.countUnreadByConversationId(conversationId, currentUser);
+            if (unreadCount > 0) {
+                firstUnread = messageRepository.findFirstUnreadIdByConversationId(conversationId, currentUser, Limit.of(1))
+                        .stream().findFirst().orElse(null);
+            }
+        }
+
+        return PrevMessageDto.builder()
+                .nextCursor(hasMore ? page.get(page.size() - 1).getId() : null)
+                .hasMore(hasMore)
+                .firstUnreadMessage(firstUnread)
+                .unreadMessageCount(unreadCount)
+                .chatMessages(chatMessages)
+                .build();
     }
 
     @Transactional
     public void processPrivateMessage(MessageRequest messageRequest){
+        if (messageWriter.isEnabled() && !"system".equals(messageRequest.getUsername())) {
+            sendToUser(messageRequest.getUsername(), acceptForWriteBehind(messageRequest));
+            return;
+        }
         UUID originalConversationId = messageRequest.getConversationId();
 
         MessageResponse savedMessage = conversationService.sendMessage(originalConversationId, messageRequest);
@@ -119,6 +173,51 @@ public class ChatService implements IChatService {
         String usernameSender = messageRequest.getUsername();
         sendToUser(usernameSender, savedMessage);
     }
+    // Assigns the id and timestamp here so the message can be delivered before it is written
+    private MessageResponse acceptForWriteBehind(MessageRequest messageRequest) {
+        UUID conversationId = messageRequest.getConversationId();
+        if (membershipCache.membersOf(conversationId).isEmpty()) {
+            throw new IllegalArgumentException("Conversation not found");
+        }
+        User sender = userRepository.findByUsername(messageRequest.getUsername());
+        if (sender == null) {
+            throw new IllegalArgumentException("Sender not found");
+        }
+        Attachment attachment = attachmentService.resolveForMessage(messageRequest, sender.getId());
+        UUID id = UuidV7Generator.next();
+        Instant now = Instant.now();
+        List<MessageState> states = List.of(MessageState.DELIVERED);
+        MessageRow row = MessageRow.builder()
+                .id(id)
+                .conversationId(conversationId)
+                .senderId(sender.getId())
+                .content(messageRequest.getContent())
+                .image(messageRequest.getImage())
+                .attachmentId(attachment != null ? attachment.getId() : null)
+                .attachmentWidth(attachment != null ? attachment.getWidth() : null)
+                .attachmentHeight(attachment != null ? attachment.getHeight() : null)
+                .createdAt(now)
+                .dateSent(now)
+                .dateDelivered(now)
+                .states(states)
+                .build();
+        messageWriter.enqueue(new BatchingMessageWriter.PendingMessage(row, sender.getUsername()));
+        return MessageResponse.builder()
+                .id(id)
+                .sender(new UserMapper().toUserResponseSecure(sender))
+                .conversationId(conversationId.toString())
+                .content(messageRequest.getContent())
+                .image(messageRequest.getImage())
+                .attachmentId(row.getAttachmentId())
+                .attachmentUrl(attachmentService.urlOf(row.getAttachmentId()))
+                .attachmentWidth(row.getAttachmentWidth())
+                .attachmentHeight(row.getAttachmentHeight())
+                .dateSent(now)
+                .dateDelivered(now)
+                .states(states)
+                .build();
+    }
+
     private void sendToUser(String sender, MessageResponse savedMessage) {
         UUID conversationId;
         try {
@@ -127,10 +226,8 @@ public class ChatService implements IChatService {
             log.error("Invalid conversationId format in MessageResponse: {}", savedMessage.getConversationId());
             return; // Skip processing this message
         }
-        Set<User> userDTOS = getUsersInConversation(conversationId);
-
-        userDTOS.stream()
-                .map(User::getUsername)
+        membershipCache.membersOf(conversationId).stream()
+                .filter(username -> destinationStore.userDestinationIsActive(username, "/private-messages"))
                 .forEach(username -> {
                     log.info("Sending message to: " + username);
                     log.info("Message content: " + savedMessage); // Add this line
@@ -144,13 +241,6 @@ public class ChatService implements IChatService {
                 .filter(name -> !loggedUser.equals(name))
                 .forEach(subscriber -> simpMessagingTemplate.convertAndSendToUser(subscriber, destination, payload));
     }
-    private Set<User> getUsersInConversation(UUID conversationId) {
-        ConversationResponse conversation = conversationService.getConversationById(conversationId);
-        if (conversation != null) {
-            return new HashSet<>(conversation.getParticipants());
-        }
-        return new HashSet<>();
-    }
 
     @SneakyThrows
     public void storeMessage(MessageRequest messageRequest){
@@ -165,6 +255,7 @@ public class ChatService implements IChatService {
                     .dateSent(Instant.now())
                     .build();
             messageRepository.save(message);
+            conversationService.recordMessage(message);
             conversationService.sendMessage(messageRequest.getConversationId(),messageRequest);
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -172,31 +263,6 @@ public class ChatService implements IChatService {
     }
 
 
-    public void broadcastOnlineUsers() {
-        List<User> onlineUsers = userRepository.findAllByUserState(UserState.ONLINE);
-
-        List<String> onlineUserIds = onlineUsers.stream()
-                .map(user -> user.getId().toString())
-                .collect(Collectors.toList());
-
-        Map<String, Object> onlineUsersMessage = new HashMap<>();
-        onlineUsersMessage.put("type", "ONLINE_USERS");
-        onlineUsersMessage.put("metadata", Map.of("USERS", onlineUserIds));
-
-        Set<String> connectedUsers = userSocketService.getConnectedUsernames();
-        for (String connectedUsername : connectedUsers) {
-            try {
-                simpMessagingTemplate.convertAndSendToUser(
-                        connectedUsername,
-                        "/queue/messages",
-                        onlineUsersMessage
-                );
-            } catch (Exception e) {
-                log.error(e.getMessage());
-            }
-        }
-    }
-
     public void broadcastConversationOnlineUsers(UUID conversationId) {
         ConversationResponse conversation = conversationService.getConversationById(conversationId);
         if (conversation == null || conversation.getParticipants().isEmpty()) {
@@ -205,7 +271,7 @@ public class ChatService implements IChatService {
 
         // Filter participants who are online
         List<String> onlineUserIds = conversation.getParticipants().stream()
-                .filter(user -> UserState.ONLINE.equals(user.getUserState()))
+                .filter(user -> presenceService.isOnline(user.getUsername()))
                 .map(user -> user.getId().toString())
                 .collect(Collectors.toList());
 
@@ -217,7 +283,7 @@ public class ChatService implements IChatService {
         for (User participant : conversation.getParticipants()) {
             try {
                 // Only send to users who have active WebSocket connections
-                if (userSocketService.findUserSocketByUsername(participant.getUsername()) != null) {
+                if (presenceService.isOnline(participant.getUsername())) {
                     simpMessagingTemplate.convertAndSendToUser(
                             participant.getUsername(),
                             "/queue/messages",
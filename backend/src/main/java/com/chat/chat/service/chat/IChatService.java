@@ -16,7 +16,7 @@ public interface IChatService {
     void createAndSendConversation(List<User> users, StompHeaderAccessor accessor);
     void changeUserState(UserStateDto userStateDto, String username);
     MessageDto saveOrUpdateMessage(List<User> users, MessageDto message);
-    PrevMessageDto fetchPreviousChat(UUID conversationId, int page, String currentUser);
+    PrevMessageDto fetchPreviousChat(UUID conversationId, UUID before, Integer limit, String currentUser);
 
 
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.chat.chat.service.chatmessage;
+
+import com.chat.chat.enums.NotificationType;
+import com.chat.chat.model.Notification;
+import com.chat.chat.repository.ChatMessageBatchRepository;
+import com.chat.chat.repository.ChatMessageBatchRepository.MessageRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind persistence for chat messages. When enabled, messages are delivered as soon as they
+ * have an id and timestamp, queued here, and written through ChatMessageBatchRepository: one JDBC
+ * batch of chat_message inserts plus one counter update per conversation, in a single transaction.
+ * Senders get a MESSAGE_PERSISTED receipt once their messages are committed, or MESSAGE_FAILED
+ * after the retries run out.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchingMessageWriter {
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final BlockingDeque<PendingMessage> queue = new LinkedBlockingDeque<>();
+    private final ChatMessageBatchRepository batchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    @Autowired
+    @Qualifier("persistenceTaskScheduler")
+    private TaskScheduler taskScheduler;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    @Getter
+    @Value("${chat.messages.write-behind.enabled:false}")
+    private boolean enabled;
+    @Value("${chat.messages.write-behind.batch-size:200}")
+    private int batchSize;
+    @Value("${chat.messages.write-behind.flush-interval-ms:50}")
+    private long flushIntervalMs;
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class PendingMessage {
+        private final MessageRow row;
+        private final String senderUsername;
+        private int attempts;
+    }
+
+    @PostConstruct
+    public void scheduleFlush() {
+        if (enabled) {
+            taskScheduler.scheduleWithFixedDelay(this::flush, Duration.ofMillis(flushIntervalMs));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    public void enqueue(PendingMessage message) {
+        queue.add(message);
+        accepted.incrementAndGet();
+    }
+
+    public synchronized void flush() {
+        // Only what was queued when the flush started, so retries wait for the next round
+        int remaining = queue.size();
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (remaining > 0 && queue.drainTo(batch, Math.min(batchSize, remaining)) > 0) {
+            remaining -= batch.size();
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            committed(batch);
+            return;
+        } catch (Exception e) {
+            log.warn("Batch of {} messages failed, retrying one by one: {}", batch.size(), e.getMessage());
+        }
+        // Isolate the bad rows so one of them cannot hold back the rest of the batch
+        List<PendingMessage> written = new ArrayList<>();
+        for (PendingMessage message : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(List.of(message)));
+                written.add(message);
+            } catch (Exception e) {
+                requeueOrFail(message, e);
+            }
+        }
+        committed(written);
+    }
+
+    private void insert(List<PendingMessage> batch) {
+        List<MessageRow> rows = batch.stream().map(PendingMessage::getRow).toList();
+        batchRepository.insertAll(rows);
+        batchRepository.recordAll(rows);
+    }
+
+    private void committed(List<PendingMessage> written) {
+        if (written.isEmpty()) {
+            return;
+        }
+        batches.incrementAndGet();
+        persisted.addAndGet(written.size());
+        long now = System.currentTimeMillis();
+        written.forEach(message -> maxLagMillis.accumulateAndGet(now - message.getRow().getDateSent().toEpochMilli(), Math::max));
+        sendReceipts(NotificationType.MESSAGE_PERSISTED, written);
+    }
+
+    private void requeueOrFail(PendingMessage message, Exception e) {
+        message.attempts++;
+        if (message.attempts < MAX_ATTEMPTS) {
+            retried.incrementAndGet();
+            queue.addLast(message);
+            return;
+        }
+        failed.incrementAndGet();
+        log.error("Dropping message {} after {} attempts: {}", message.getRow().getId(), message.attempts, e.getMessage());
+        sendReceipts(NotificationType.MESSAGE_FAILED, List.of(message));
+    }
+
+    // One receipt per sender and conversation, listing every message id it covers
+    private void sendReceipts(NotificationType type, List<PendingMessage> messages) {
+        Map<String, Map<UUID, List<PendingMessage>>> bySender = messages.stream()
+                .collect(Collectors.groupingBy(PendingMessage::getSenderUsername,
+                        Collectors.groupingBy(message -> message.getRow().getConversationId())));
+        bySender.forEach((sender, conversations) -> conversations.forEach((conversationId, sent) -> {
+            Notification notification = new Notification();
+            notification.setTime(Instant.now());
+            notification.setType(type);
+            notification.addToMetadata("CONVERSATION_ID", conversationId.toString());
+            notification.addToMetadata("MESSAGE_IDS", sent.stream()
+                    .map(message -> message.getRow().getId().toString())
+                    .collect(Collectors.joining(", ", "[", "]")));
+            try {
+                messagingTemplate.convertAndSendToUser(sender, "/queue/messages", notification);
+            } catch (Exception e) {
+                log.error("Failed to send {} receipt to {}: {}", type, sender, e.getMessage());
+            }
+        }));
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled ? 1L : 0L);
+        metrics.put("batchSize", (long) batchSize);
+        metrics.put("queued", (long) queue.size());
+        metrics.put("accepted", accepted.get());
+        metrics.put("persisted", persisted.get());
+        metrics.put("batches", batches.get());
+        metrics.put("retried", retried.get());
+        metrics.put("failed", failed.get());
+        metrics.put("maxLagMillis", maxLagMillis.get());
+        return metrics;
+    }
+
+}
@@ -1,44 +1,333 @@
 package com.chat.chat.service.chatmessage;
 
+import com.chat.chat.dto.UserSummaryDto;
 import com.chat.chat.enums.MessageState;
 import com.chat.chat.mapper.ConversationMapper;
+import com.chat.chat.model.Attachment;
 import com.chat.chat.model.Message;
+import com.chat.chat.model.User;
+import com.chat.chat.model.id.UuidV7Generator;
+import com.chat.chat.payload.request.MessageImportRequest;
 import com.chat.chat.payload.request.MessageRequest;
 import com.chat.chat.payload.response.ConversationResponse;
+import com.chat.chat.payload.response.MessageImportResponse;
+import com.chat.chat.repository.ChatMessageBatchRepository;
+import com.chat.chat.repository.ChatMessageBatchRepository.MessageRow;
 import com.chat.chat.repository.ChatMessageRepository;
+import com.chat.chat.repository.ConversationRepository;
+import com.chat.chat.service.attachment.IAttachmentService;
 import com.chat.chat.service.conversation.ConversationService;
 import com.chat.chat.service.user.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ChatMessageService implements IChatMessageService {
+    private static final int MAX_CONTENT_LENGTH = 255;
+    // chat_message.image is a plain varchar; inline images go to the attachment store instead
+    private static final int MAX_IMAGE_LENGTH = 255;
+    private static final int MAX_REPORTED_ERRORS = 50;
+    private static final int IMAGE_MIGRATION_PAGE_SIZE = 100;
     private final ConversationService conversationService;
     private final UserService userService;
     private final ChatMessageRepository messageRepository;
     private final ConversationMapper conversationMapper;
+    private final ConversationRepository conversationRepository;
+    private final ChatMessageBatchRepository batchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final IAttachmentService attachmentService;
+    @Value("${chat.messages.import.batch-size:1000}")
+    private int importBatchSize;
     @Override
     public Message createMessage(MessageRequest messageRequest) {
         ConversationResponse conversation = conversationService.getConversationById(messageRequest.getConversationId());
+        User sender = userService.findUserByUsername(messageRequest.getUsername());
+        Attachment attachment = attachmentService.resolveForMessage(messageRequest, sender != null ? sender.getId() : null);
         Message chatMessage = Message.builder()
                 .createdAt(Instant.now())
                 .content(messageRequest.getContent())
                 .conversation(conversationMapper.mapConversationResponse(conversation))
                 .image(messageRequest.getImage())
+                .attachmentId(attachment != null ? attachment.getId() : null)
+                .attachmentWidth(attachment != null ? attachment.getWidth() : null)
+                .attachmentHeight(attachment != null ? attachment.getHeight() : null)
                 .dateSent(Instant.now())
                 .states(List.of(MessageState.DELIVERED))
-                .sender(userService.findUserByUsername(messageRequest.getUsername()))
+                .sender(sender)
                 .build();
-        return messageRepository.save(chatMessage);
+        Message savedMessage = messageRepository.save(chatMessage);
+        conversationService.recordMessage(savedMessage);
+        return savedMessage;
     }
 
     @Override
     public void removeMessageById(UUID id) {
+        UUID conversationId = messageRepository.findById(id)
+                .map(message -> message.getConversation().getId())
+                .orElse(null);
         messageRepository.deleteById(id);
+        if (conversationId != null) {
+            // The removed message may have been the conversation's last one
+            conversationService.refreshLastMessage(conversationId);
+        }
     }
-}
\ No newline at end of file
+
+    /**
+     * Moves base64 images that older clients stored inline in chat_message into the attachment
+     * store, pointing each row at its attachment instead. Rows are handled one at a time, so a row
+     * that cannot be decoded is logged and left as it was; only rows still holding a data URL are
+     * read, so the next start resumes wherever this one stopped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInlineImages() {
+        UUID afterId = new UUID(0, 0);
+        int migrated = 0;
+        int failed = 0;
+        List<Message> page;
+        do {
+            page = messageRepository.findInlineImagesAfter(afterId, Limit.of(IMAGE_MIGRATION_PAGE_SIZE));
+            for (Message message : page) {
+                afterId = message.getId();
+                try {
+                    UUID senderId = message.getSender() != null ? message.getSender().getId() : null;
+                    Attachment attachment = attachmentService.storeDataUrl(message.getImage(), senderId);
+                    messageRepository.moveImageToAttachment(message.getId(), attachment.getId(),
+                            attachment.getWidth(), attachment.getHeight());
+                    migrated++;
+                } catch (Exception e) {
+                    failed++;
+                    log.warn("Could not move the inline image of message {} to the attachment store: {}",
+                            message.getId(), e.getMessage());
+                }
+            }
+        } while (page.size() == IMAGE_MIGRATION_PAGE_SIZE);
+        if (migrated > 0 || failed > 0) {
+            log.info("Moved {} inline images to the attachment store, {} failed", migrated, failed);
+        }
+    }
+
+    /**
+     * Streams an NDJSON history import into one conversation. Senders are resolved once from the
+     * participant list, rows are inserted in JDBC batches of chat.messages.import.batch-size (one
+     * transaction each), and the conversation's counters and dateUpdate are recomputed once at the
+     * end. Bad lines are skipped and reported; a failed batch stops the import.
+     */
+    @Override
+    public MessageImportResponse importMessages(UUID conversationId, String importer, InputStream ndjson) throws IOException {
+        Map<String, UUID> senders = conversationRepository.findParticipantSummariesById(conversationId).stream()
+                .collect(Collectors.toMap(UserSummaryDto::getUsername, UserSummaryDto::getId, (a, b) -> a));
+        if (senders.isEmpty()) {
+            throw new IllegalArgumentException("Conversation not found");
+        }
+        if (!senders.containsKey(importer)) {
+            throw new IllegalArgumentException("Only participants can import into this conversation");
+        }
+        // The importer names the attachments and supplies the inline images, so attachments must be
+        // ones the importer may attach and images are stored as the importer's uploads
+        UUID importerId = senders.get(importer);
+
+        Map<String, Optional<Attachment>> attachments = new HashMap<>();
+        ObjectReader reader = objectMapper.readerFor(MessageImportRequest.class);
+        List<MessageRow> batch = new ArrayList<>(importBatchSize);
+        List<String> errors = new ArrayList<>();
+        long imported = 0;
+        long skipped = 0;
+        int batches = 0;
+        long lineNumber = 0;
+        long started = System.nanoTime();
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(ndjson, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String error;
+                try {
+                    MessageImportRequest request = reader.readValue(line);
+                    error = validateImport(request, senders);
+                    if (error == null) {
+                        Attachment attachment = resolveImportAttachment(request, importerId, attachments);
+                        if (request.getAttachmentId() != null && attachment == null) {
+                            error = "attachment not found";
+                        } else {
+                            batch.add(toImportRow(conversationId, request, senders.get(request.getSender()), attachment));
+                        }
+                    }
+                } catch (IOException e) {
+                    error = "invalid JSON";
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                }
+                if (error != null) {
+                    skipped++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add("line " + lineNumber + ": " + error);
+                    }
+                    continue;
+                }
+                if (batch.size() >= importBatchSize) {
+                    imported += insertImportBatch(batch);
+                    batches++;
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                imported += insertImportBatch(batch);
+                batches++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Import into {} stopped at line {}: {}", conversationId, lineNumber, e.getMessage());
+            errors.add("line " + lineNumber + ": import stopped, " + e.getMessage());
+        } finally {
+            if (imported > 0) {
+                conversationService.refreshLastMessage(conversationId);
+            }
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        long rowsPerSecond = imported * 1000 / elapsedMillis;
+        log.info("Imported {} messages into {} in {} ms ({} rows/s), {} skipped", imported, conversationId,
+                elapsedMillis, rowsPerSecond, skipped);
+        return MessageImportResponse.builder()
+                .imported(imported)
+                .skipped(skipped)
+                .batches(batches)
+                .elapsedMillis(elapsedMillis)
+                .rowsPerSecond(rowsPerSecond)
+                .errors(errors)
+                .build();
+    }
+
+    private String validateImport(MessageImportRequest request, Map<String, UUID> senders) {
+        if (request.getSender() == null || !senders.containsKey(request.getSender())) {
+            return "sender is not a participant";
+        }
+        if (request.getContent() == null && request.getImage() == null && request.getAttachmentId() == null) {
+            return "content, image or attachmentId is required";
+        }
+        if (request.getContent() != null && request.getContent().length() > MAX_CONTENT_LENGTH) {
+            return "content longer than " + MAX_CONTENT_LENGTH + " characters";
+        }
+        if (request.getImage() != null && !request.getImage().startsWith("data:")
+                && request.getImage().length() > MAX_IMAGE_LENGTH) {
+            return "image longer than " + MAX_IMAGE_LENGTH + " characters";
+        }
+        return null;
+    }
+
+    /**
+     * The attachment an import line points at. Named attachments are looked up once per import; an
+     * inline data URL goes through the same path as a live message, so it is decoded and checked,
+     * stored as the importer's upload and cleared from the line. Throws IllegalArgumentException
+     * for an image that cannot be decoded.
+     */
+    private Attachment resolveImportAttachment(MessageImportRequest request, UUID importerId,
+                                               Map<String, Optional<Attachment>> attachments) {
+        if (request.getAttachmentId() != null) {
+            return attachments
+                    .computeIfAbsent(request.getAttachmentId(), id -> attachmentService.findAttachable(id, importerId))
+                    .orElse(null);
+        }
+        MessageRequest message = new MessageRequest(request.getSender(), null, request.getContent(), request.getImage(), null);
+        Attachment attachment = attachmentService.resolveForMessage(message, importerId);
+        request.setImage(message.getImage());
+        return attachment;
+    }
+
+    private MessageRow toImportRow(UUID conversationId, MessageImportRequest request, UUID senderId, Attachment attachment) {
+        Instant dateSent = request.getDateSent() != null ? request.getDateSent() : Instant.now();
+        List<MessageState> states = request.getDateRead() != null
+                ? List.of(MessageState.DELIVERED, MessageState.READ)
+                : List.of(MessageState.DELIVERED);
+        return MessageRow.builder()
+                .id(UuidV7Generator.next())
+                .conversationId(conversationId)
+                .senderId(senderId)
+                .content(request.getContent())
+                .image(request.getImage())
+                .attachmentId(attachment != null ? attachment.getId() : null)
+                .attachmentWidth(attachment != null ? attachment.getWidth() : null)
+                .attachmentHeight(attachment != null ? attachment.getHeight() : null)
+                .createdAt(Instant.now())
+                .dateSent(dateSent)
+                .dateDelivered(dateSent)
+                .dateRead(request.getDateRead())
+                .states(states)
+                .build();
+    }
+
+    private int insertImportBatch(List<MessageRow> batch) {
+        transactionTemplate.executeWithoutResult(status -> batchRepository.insertAll(batch));
+        return batch.size();
+    }
+
+    /**
+     * Writes the conversation oldest first as NDJSON, one line per message in the import format
+     * plus id and states. Rows come from a streaming cursor and are detached once written, so memory
+     * stays flat however long the history is. The caller owns (and closes) the stream.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long exportMessages(UUID conversationId, OutputStream out) throws IOException {
+        long exported = 0;
+        try (Stream<Message> messages = messageRepository.streamByConversationId(conversationId);
+             JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            for (Message message : (Iterable<Message>) messages::iterator) {
+                json.writeStartObject();
+                json.writeStringField("id", String.valueOf(message.getId()));
+                json.writeStringField("sender", message.getSender() != null ? message.getSender().getUsername() : null);
+                json.writeStringField("content", message.getContent());
+                json.writeStringField("image", message.getImage());
+                json.writeStringField("attachmentId", message.getAttachmentId());
+                json.writeStringField("dateSent", message.getDateSent() != null ? message.getDateSent().toString() : null);
+                json.writeStringField("dateRead", message.getDateRead() != null ? message.getDateRead().toString() : null);
+                json.writeArrayFieldStart("states");
+                if (message.getStates() != null) {
+                    for (MessageState state : message.getStates()) {
+                        json.writeString(state.name());
+                    }
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+                json.writeRaw('\n');
+                entityManager.detach(message);
+                exported++;
+            }
+        }
+        return exported;
+    }
+}
@@ -2,10 +2,16 @@ package com.chat.chat.service.chatmessage;
 
 import com.chat.chat.model.Message;
 import com.chat.chat.payload.request.MessageRequest;
+import com.chat.chat.payload.response.MessageImportResponse;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.UUID;
 
 public interface IChatMessageService {
     Message createMessage(MessageRequest messageRequest);
     void removeMessageById(UUID id);
+    MessageImportResponse importMessages(UUID conversationId, String importer, InputStream ndjson) throws IOException;
+    long exportMessages(UUID conversationId, OutputStream out) throws IOException;
 }
@@ -0,0 +1,64 @@
+package com.chat.chat.service.conversation;
+
+import com.chat.chat.repository.ConversationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Conversation id to participant usernames, for message delivery. Loaded with a single join on the
+ * participants table and evicted whenever membership changes, so fan-out never loads the
+ * conversation entity or its messages.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConversationMembershipCache {
+    private final Map<UUID, Set<String>> members = new ConcurrentHashMap<>();
+    private final ConversationRepository conversationRepository;
+
+    @Value("${chat.conversation.membership-cache-size:10000}")
+    private int maxEntries;
+
+    public Set<String> membersOf(UUID conversationId) {
+        Set<String> cached = members.get(conversationId);
+        if (cached != null) {
+            return cached;
+        }
+        Set<String> loaded = Set.copyOf(conversationRepository.findParticipantUsernamesById(conversationId));
+        if (members.size() >= maxEntries) {
+            Iterator<UUID> it = members.keySet().iterator();
+            if (it.hasNext()) {
+                members.remove(it.next());
+            }
+        }
+        Set<String> existing = members.putIfAbsent(conversationId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * Drops the entry now and, inside a transaction, again after commit, so a read racing the
+     * uncommitted change cannot leave the old membership cached.
+     */
+    public void evict(UUID conversationId) {
+        if (conversationId == null) {
+            return;
+        }
+        members.remove(conversationId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    members.remove(conversationId);
+                }
+            });
+        }
+    }
+}
@@ -1,26 +1,37 @@
 package com.chat.chat.service.conversation;
 
+import com.chat.chat.dto.ConversationSummaryDto;
+import com.chat.chat.dto.ParticipantSummaryDto;
 import com.chat.chat.enums.MessageState;
 import com.chat.chat.mapper.ChatMessageMapper;
 import com.chat.chat.mapper.ConversationMapper;
 import com.chat.chat.mapper.UserMapper;
+import com.chat.chat.model.Attachment;
 import com.chat.chat.model.Conversation;
 import com.chat.chat.model.Message;
 import com.chat.chat.model.User;
 import com.chat.chat.payload.request.ConversationRequest;
 import com.chat.chat.payload.request.MessageRequest;
 import com.chat.chat.payload.response.ConversationResponse;
+import com.chat.chat.payload.response.MessagePageResponse;
 import com.chat.chat.payload.response.MessageResponse;
 import com.chat.chat.repository.ChatMessageRepository;
 import com.chat.chat.repository.ConversationRepository;
+import com.chat.chat.service.attachment.IAttachmentService;
+import com.chat.chat.service.presence.PresenceAudienceIndex;
 import com.chat.chat.service.user.UserService;
 import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.lang.module.ResolutionException;
 import java.time.Instant;
@@ -31,11 +42,19 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ConversationService implements IConversationService {
     private static final Log log = LogFactory.getLog(ConversationService.class);
+    public static final int DEFAULT_MESSAGE_PAGE_SIZE = 50;
+    public static final int MAX_MESSAGE_PAGE_SIZE = 200;
+    private static final int LAST_MESSAGE_PREVIEW_LENGTH = 255;
+    private static final int PARTICIPANT_KEY_BACKFILL_CHUNK = 500;
     private final ConversationRepository conversationRepository;
     private final UserService userService;
     private final ConversationMapper conversationMapper;
     private final ChatMessageMapper messageMapper;
     private final ChatMessageRepository chatMessageRepository;
+    private final PresenceAudienceIndex presenceAudienceIndex;
+    private final ConversationMembershipCache membershipCache;
+    private final IAttachmentService attachmentService;
+    private final PlatformTransactionManager transactionManager;
     @Override
     public List<ConversationResponse> getAllConversations() {
         return conversationRepository.findAll().stream().map(conversationMapper).collect(Collectors.toList());
@@ -47,56 +66,39 @@ public class ConversationService implements IConversationService {
         if (user == null) {
             throw new IllegalArgumentException("User with ID " + userId + " not found");
         }
-        var conversations = conversationRepository.findAllByUserId(userId);
-        List<Conversation> processedConversations = new ArrayList<>();
-        for(Conversation conversation : conversations){
+        // Ordered by the indexed date_update column, which sendMessage keeps current
+        List<Conversation> conversations = conversationRepository.findAllByParticipantIdOrderByDateUpdateDesc(userId);
+        if (conversations.isEmpty()) {
+            return List.of();
+        }
+        for (Conversation conversation : conversations) {
             if (conversation.getParticipants() == null) {
                 conversation.setParticipants(new ArrayList<>());
             } else {
-                List<User> cleanedParticipants = conversation.getParticipants().stream()
+                conversation.setParticipants(conversation.getParticipants().stream()
                         .filter(Objects::nonNull)
-                        .collect(Collectors.toList());
-                conversation.setParticipants(cleanedParticipants);
+                        .collect(Collectors.toList()));
             }
+        }
 
-            if(conversation.getDateUpdate() == null){
-                try {
-                    List<MessageResponse> messageResponses = this.getMessages(String.valueOf(conversation.getId()));
-
-                    if (!messageResponses.isEmpty()) {
-                        MessageResponse lastMessage = messageResponses.get(messageResponses.size() - 1);
-                        conversation.setDateUpdate(lastMessage.getDateSent());
-                    } else {
-                        conversation.setDateUpdate(Instant.now());
-                    }
-                } catch (Exception e) {
-                    log.error("Error processing messages for conversation: " + conversation.getId(), e);
-                    conversation.setDateUpdate(Instant.now());
-                }
+        return conversationMapper.mapConversations(conversations);
+    }
 
-            }
-            processedConversations.add(conversation);
-        }
+    @Override
+    public List<ConversationSummaryDto> getConversationSummariesByUserId(UUID userId) {
+        // Throws IllegalArgumentException for unknown users, same as the full listing
+        userService.findUserById(userId);
 
-        if (processedConversations.isEmpty()) {
+        List<ConversationSummaryDto> summaries = conversationRepository.findConversationSummariesByUserId(userId);
+        if (summaries.isEmpty()) {
             return List.of();
         }
-
-        for (Conversation conversation : processedConversations) {
-            if (conversation.getParticipants() != null) {
-                conversation.setParticipants(
-                        conversation.getParticipants().stream()
-                                .filter(Objects::nonNull)
-                                .collect(Collectors.toList())
-                );
-            }
+        Map<UUID, ConversationSummaryDto> summariesById = summaries.stream()
+                .collect(Collectors.toMap(ConversationSummaryDto::getId, summary -> summary));
+        for (ParticipantSummaryDto participant : conversationRepository.findParticipantSummaries(summariesById.keySet())) {
+            summariesById.get(participant.getConversationId()).getParticipants().add(participant);
         }
-
-        List<Conversation> sortedConversations = processedConversations.stream()
-                .sorted(Comparator.comparing(Conversation::getDateUpdate, Comparator.reverseOrder()))
-                .collect(Collectors.toList());
-
-        return conversationMapper.mapConversations(sortedConversations);
+        return summaries;
     }
 
     @Override
@@ -105,15 +107,48 @@ public class ConversationService implements IConversationService {
         if(conversationExists){
             return null;
         }
-        var conversationMapper = new ConversationMapper(userService, new UserMapper());
-        Conversation conversation = conversationMapper.mapConversationRequest(request);
-        try {
-            conversationRepository.save(conversation);
-        } catch (Exception ex) {
-            System.out.println(ex.getMessage());
+        Conversation conversation = insertDirectConversation(conversationMapper.mapConversationRequest(request));
+        // Null when a concurrent request created it first, same as when it already existed
+        return conversation != null ? conversationMapper.apply(conversation) : null;
+    }
+
+    /**
+     * Returns the direct conversation between these users, creating it when there is none. Safe to
+     * call from inside another transaction: the insert commits on its own, and a concurrent creator
+     * winning uk_conversation_participant_key is answered with the winner's row.
+     */
+    public Conversation provisionDirectConversation(List<UUID> participantIds) {
+        Optional<Conversation> existing = findDirectConversation(participantIds);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        Conversation conversation = insertDirectConversation(conversationMapper.mapConversationRequest(
+                ConversationRequest.builder().participants(participantIds).dateStarted(Instant.now()).build()));
+        if (conversation != null) {
+            return conversation;
         }
+        return findDirectConversation(participantIds)
+                .orElseThrow(() -> new IllegalStateException("Direct conversation vanished after a duplicate insert"));
+    }
 
-        return conversationMapper.apply(conversation);
+    /**
+     * Inserts and flushes in a transaction of its own, so a duplicate participant key fails here rather
+     * than at the caller's commit, and does not leave the caller's transaction rollback-only.
+     * Returns null when the key is already taken.
+     */
+    private Conversation insertDirectConversation(Conversation conversation) {
+        TransactionTemplate requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Conversation saved;
+        try {
+            saved = requiresNew.execute(status -> conversationRepository.saveAndFlush(conversation));
+        } catch (DataIntegrityViolationException ex) {
+            // Lost a race on uk_conversation_participant_key: someone else just created it
+            return null;
+        }
+        presenceAudienceIndex.evict(saved.getParticipants());
+        membershipCache.evict(saved.getId());
+        return saved;
     }
 
     @Override
@@ -127,42 +162,77 @@ public class ConversationService implements IConversationService {
         if (participantIds == null || participantIds.isEmpty()) {
             return false;
         }
+        return conversationRepository.existsByParticipantKey(Conversation.participantKeyOf(participantIds));
+    }
 
-        List<Conversation> allConversations = conversationRepository.findAll(); // Retrieve all conversations
-
-        for (Conversation conversation : allConversations) {
-            boolean allMembersFound = true;
-            List<User> participantsInThisConversation = conversation.getParticipants();
-
-            if (participantsInThisConversation.size() != participantIds.size()) {
-                continue;
-            }
-
-            for(UUID participantId : participantIds){
-                boolean found = false;
-                for(User participant : participantsInThisConversation){
-                    if(participant != null && participant.getId() != null && participant.getId().equals(participantId)){
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
-                    allMembersFound = false;
-                    break;
-                }
-            }
-            if (allMembersFound) {
-                return true;
-            }
+    @Override
+    public Optional<Conversation> findDirectConversation(List<UUID> participantIds) {
+        if (participantIds == null || participantIds.isEmpty()) {
+            return Optional.empty();
         }
-
-        return false;
+        return conversationRepository.findByParticipantKey(Conversation.participantKeyOf(participantIds));
     }
+
     @Override
     public List<MessageResponse> getMessages(String conversationId) {
         List<Message> messages = chatMessageRepository.findMessagesByConversationId(UUID.fromString(conversationId));
         return messageMapper.mapMessageResponse(messages);
     }
+
+    // Every listed conversation's history in one query, oldest first, keyed by conversation id
+    public Map<UUID, List<MessageResponse>> getMessagesByConversationIds(Collection<UUID> conversationIds) {
+        if (conversationIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<UUID, List<MessageResponse>> messages = new HashMap<>();
+        for (Message message : chatMessageRepository.findMessagesByConversationIdIn(conversationIds)) {
+            messages.computeIfAbsent(message.getConversation().getId(), id -> new ArrayList<>())
+                    .add(messageMapper.apply(message));
+        }
+        return messages;
+    }
+
+    @Override
+    public MessagePageResponse getMessagePage(UUID conversationId, UUID before, Integer limit) {
+        int size = resolvePageSize(limit);
+        List<Message> page = findMessagePage(conversationId, before, size);
+        boolean hasMore = page.size() > size;
+        if (hasMore) {
+            page = page.subList(0, size);
+        }
+        // Walked newest-first along the index; hand back oldest-first like getMessages does
+        List<Message> chronological = new ArrayList<>(page);
+        Collections.reverse(chronological);
+
+        return MessagePageResponse.builder()
+                .messages(messageMapper.mapMessageResponse(chronological))
+                .nextCursor(hasMore ? page.get(page.size() - 1).getId() : null)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Keyset page over (conversation_id, date_sent, id), newest first. Returns up to size + 1 rows
+     * so callers can tell whether an older page exists without a count query.
+     */
+    public List<Message> findMessagePage(UUID conversationId, UUID before, int size) {
+        Limit fetch = Limit.of(size + 1);
+        if (before == null) {
+            return chatMessageRepository.findLatestByConversationId(conversationId, fetch);
+        }
+        Instant cursorDate = chatMessageRepository.findDateSentById(conversationId, before);
+        if (cursorDate == null) {
+            throw new IllegalArgumentException("Cursor message " + before + " not found in conversation");
+        }
+        return chatMessageRepository.findBeforeByConversationId(conversationId, cursorDate, before, fetch);
+    }
+
+    public static int resolvePageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_MESSAGE_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_MESSAGE_PAGE_SIZE);
+    }
     @Override
     @Transactional
     public MessageResponse sendMessage(UUID conversationId, MessageRequest messageRequest) {
@@ -170,53 +240,83 @@ public class ConversationService implements IConversationService {
 
         Conversation conversation = conversationRepository.findById(conversationId)
                 .orElseThrow(() -> new IllegalArgumentException("Conversation not found"));
-        conversation.setDateUpdate(Instant.now());
 
+        User sender;
+        if (isSystemMessage) {
+            sender = userService.getOrCreateSystemUser();
+        } else {
+            sender = userService.findUserByUsername(messageRequest.getUsername());
+            if (sender == null) {
+                throw new IllegalArgumentException("Sender not found");
+            }
+        }
+
+        Attachment attachment = attachmentService.resolveForMessage(messageRequest, sender.getId());
         Message message = new Message();
         message.setContent(messageRequest.getContent());
         message.setImage(messageRequest.getImage());
+        if (attachment != null) {
+            message.setAttachmentId(attachment.getId());
+            message.setAttachmentWidth(attachment.getWidth());
+            message.setAttachmentHeight(attachment.getHeight());
+        }
         message.setConversation(conversation);
         message.setDateSent(Instant.now());
         message.setStates(List.of(MessageState.DELIVERED));
         message.setDateDelivered(Instant.now());
 
-        if (isSystemMessage) {
-            User systemUser = userService.getOrCreateSystemUser();
-            message.setSender(systemUser);
-        } else {
-            User sender = userService.findUserByUsername(messageRequest.getUsername());
-            if (sender == null) {
-                throw new IllegalArgumentException("Sender not found");
-            }
-            message.setSender(sender);
-        }
+        message.setSender(sender);
 
         Message savedMessage = chatMessageRepository.save(message);
-        conversationRepository.save(conversation);
-
-        return new MessageResponse(
-                savedMessage.getId(),
-                isSystemMessage ? null : new UserMapper().toUserResponseSecure(savedMessage.getSender()),
-                savedMessage.getConversation().getId().toString(),
-                savedMessage.getContent(),
-                savedMessage.getImage(),
-                savedMessage.getDateSent(),
-                savedMessage.getDateDelivered(),
-                savedMessage.getDateRead(),
-                savedMessage.getStates()
-        );
+        recordMessage(savedMessage);
+
+        return MessageResponse.builder()
+                .id(savedMessage.getId())
+                .sender(isSystemMessage ? null : new UserMapper().toUserResponseSecure(savedMessage.getSender()))
+                .conversationId(savedMessage.getConversation().getId().toString())
+                .content(savedMessage.getContent())
+                .image(savedMessage.getImage())
+                .attachmentId(savedMessage.getAttachmentId())
+                .attachmentUrl(attachmentService.urlOf(savedMessage.getAttachmentId()))
+                .attachmentWidth(savedMessage.getAttachmentWidth())
+                .attachmentHeight(savedMessage.getAttachmentHeight())
+                .dateSent(savedMessage.getDateSent())
+                .dateDelivered(savedMessage.getDateDelivered())
+                .dateRead(savedMessage.getDateRead())
+                .states(savedMessage.getStates())
+                .build();
     }
 
-    @Override
-    public List<ConversationResponse> getAllGroupConversations() {
-        List<Conversation> groupConversations = conversationRepository.findByGroupConversationTrue();
+    /**
+     * Moves the conversation's last-message pointer, preview and counter onto a freshly saved message.
+     * Runs as a single UPDATE so concurrent senders cannot lose increments. Being a bulk query, it
+     * makes Hibernate flush the pending message insert first, so hibernate.jdbc.batch_size never
+     * groups these inserts; that costs nothing for one message per request, and the paths that write
+     * many rows (write-behind, import) batch through ChatMessageBatchRepository instead.
+     */
+    public void recordMessage(Message message) {
+        UUID senderId = message.getSender() != null ? message.getSender().getId() : null;
+        Instant dateSent = message.getDateSent() != null ? message.getDateSent() : Instant.now();
+        conversationRepository.recordMessage(message.getConversation().getId(), message.getId(),
+                previewOf(message), senderId, dateSent);
+    }
+
+    public void refreshLastMessage(UUID conversationId) {
+        conversationRepository.refreshLastMessage(conversationId);
+    }
 
-        // Sort by date if needed
-        List<Conversation> sortedConversations = groupConversations.stream()
-                .sorted(Comparator.comparing(Conversation::getDateUpdate, Comparator.nullsLast(Comparator.naturalOrder())))
-                .collect(Collectors.toList());
+    private String previewOf(Message message) {
+        String content = message.getContent();
+        if (content == null) {
+            return message.getImage() != null || message.getAttachmentId() != null ? "[image]" : null;
+        }
+        return content.length() > LAST_MESSAGE_PREVIEW_LENGTH ? content.substring(0, LAST_MESSAGE_PREVIEW_LENGTH) : content;
+    }
 
-        return conversationMapper.mapConversations(sortedConversations);
+    @Override
+    public List<ConversationResponse> getAllGroupConversations() {
+        List<Conversation> groupConversations = conversationRepository.findByGroupConversationTrueOrderByDateUpdateAsc();
+        return conversationMapper.mapConversations(groupConversations);
     }
 
     @Transactional(dontRollbackOn = ObjectOptimisticLockingFailureException.class)
@@ -237,6 +337,7 @@ public class ConversationService implements IConversationService {
 
                     if (!hasSystemUser) {
                         conversation.getParticipants().add(systemUser);
+                        membershipCache.evict(conversation.getId());
                     }
                 }
 
@@ -277,6 +378,57 @@ public class ConversationService implements IConversationService {
             // Log error but don't fail application start
             log.error("Failed to initialize system user: " + e.getMessage(), e);
         }
+        try {
+            backfillLastMessages();
+        } catch (Exception e) {
+            log.error("Failed to backfill conversation last messages: " + e.getMessage(), e);
+        }
+        try {
+            backfillParticipantKeys();
+        } catch (Exception e) {
+            log.error("Failed to backfill conversation participant keys: " + e.getMessage(), e);
+        }
+    }
+
+    // Keys direct conversations created before participant_key existed, in chunks to bound memory
+    public void backfillParticipantKeys() {
+        List<UUID> pending = conversationRepository.findDirectIdsMissingParticipantKey();
+        Set<String> seen = new HashSet<>();
+        int keyed = 0;
+        for (int from = 0; from < pending.size(); from += PARTICIPANT_KEY_BACKFILL_CHUNK) {
+            List<UUID> chunk = pending.subList(from, Math.min(from + PARTICIPANT_KEY_BACKFILL_CHUNK, pending.size()));
+            List<Conversation> toSave = new ArrayList<>();
+            for (Conversation conversation : conversationRepository.findAllById(chunk)) {
+                conversation.syncParticipantKey();
+                String key = conversation.getParticipantKey();
+                if (key == null) {
+                    continue;
+                }
+                // Older data may hold duplicate direct conversations; only the first one gets the key
+                if (!seen.add(key) || conversationRepository.existsByParticipantKey(key)) {
+                    log.warn("Duplicate direct conversation " + conversation.getId() + " left without participant key");
+                    conversation.setParticipantKey(null);
+                    continue;
+                }
+                toSave.add(conversation);
+            }
+            conversationRepository.saveAll(toSave);
+            keyed += toSave.size();
+        }
+        if (keyed > 0) {
+            log.info("Backfilled participant key for " + keyed + " conversations");
+        }
+    }
+
+    // Fills the denormalized last-message columns for rows written before they existed
+    public void backfillLastMessages() {
+        List<UUID> pending = conversationRepository.findIdsMissingLastMessage();
+        for (UUID conversationId : pending) {
+            conversationRepository.refreshLastMessage(conversationId);
+        }
+        if (!pending.isEmpty()) {
+            log.info("Backfilled last message for " + pending.size() + " conversations");
+        }
     }
 
     @Override
@@ -317,6 +469,8 @@ public class ConversationService implements IConversationService {
                 .build();
 
         Conversation savedConversation = conversationRepository.save(conversation);
+        presenceAudienceIndex.evict(participants);
+        membershipCache.evict(savedConversation.getId());
         return conversationMapper.apply(savedConversation);
     }
     @Override
@@ -349,6 +503,8 @@ public class ConversationService implements IConversationService {
 
         conversation.setDateUpdate(Instant.now());
         Conversation updatedConversation = conversationRepository.save(conversation);
+        presenceAudienceIndex.evict(updatedConversation.getParticipants());
+        membershipCache.evict(conversationId);
 
         return conversationMapper.apply(updatedConversation);
     }
@@ -366,6 +522,7 @@ public class ConversationService implements IConversationService {
 
         // Get current participants
         List<User> currentParticipants = conversation.getParticipants();
+        List<User> previousParticipants = new ArrayList<>(currentParticipants);
 
         // Remove specified members
         currentParticipants.removeIf(user -> memberIds.contains(user.getId()));
@@ -377,6 +534,8 @@ public class ConversationService implements IConversationService {
 
         conversation.setDateUpdate(Instant.now());
         Conversation updatedConversation = conversationRepository.save(conversation);
+        presenceAudienceIndex.evict(previousParticipants);
+        membershipCache.evict(conversationId);
 
         return conversationMapper.apply(updatedConversation);
     }
@@ -1,22 +1,28 @@
 package com.chat.chat.service.conversation;
 
+import com.chat.chat.dto.ConversationSummaryDto;
 import com.chat.chat.model.Conversation;
 import com.chat.chat.payload.request.ConversationRequest;
 import com.chat.chat.payload.request.MessageRequest;
 import com.chat.chat.payload.response.ConversationResponse;
+import com.chat.chat.payload.response.MessagePageResponse;
 import com.chat.chat.payload.response.MessageResponse;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface IConversationService {
     List<ConversationResponse> getAllConversations();
     List<ConversationResponse> getAllConversationsByUserId(UUID id);
+    List<ConversationSummaryDto> getConversationSummariesByUserId(UUID userId);
     ConversationResponse createConversation(ConversationRequest request) throws Exception;
     ConversationResponse getConversationById(UUID id);
     boolean participantsHasConversation(List<UUID> participantIds);
+    Optional<Conversation> findDirectConversation(List<UUID> participantIds);
     Conversation updateConversationById(UUID id);
     List<MessageResponse> getMessages(String conversationId);
+    MessagePageResponse getMessagePage(UUID conversationId, UUID before, Integer limit);
 
     List<ConversationResponse> getAllGroupConversations();
 
@@ -4,19 +4,29 @@ import com.chat.chat.dto.FriendRequestDto;
 import com.chat.chat.enums.FriendRequestStatus;
 import com.chat.chat.mapper.FriendRequestMapper;
 import com.chat.chat.model.FriendRequest;
+import com.chat.chat.model.Friendship;
+import com.chat.chat.model.FriendshipId;
 import com.chat.chat.model.User;
-import com.chat.chat.payload.request.ConversationRequest;
 import com.chat.chat.payload.request.SenderRequest;
 import com.chat.chat.payload.response.FriendshipStatus;
 import com.chat.chat.payload.response.ResponseObject;
 import com.chat.chat.repository.FriendRequestRepository;
+import com.chat.chat.repository.FriendshipRepository;
 import com.chat.chat.repository.UserRepository;
 import com.chat.chat.service.conversation.ConversationService;
+import com.chat.chat.service.presence.PresenceAudienceIndex;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.lang.module.ResolutionException;
 import java.time.Instant;
@@ -26,17 +36,25 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class FriendRequestService implements IFriendRequestService {
+    private static final int PROVISION_PAGE_SIZE = 500;
     @Autowired
     private UserRepository userRepository;
     @Autowired
     private FriendRequestRepository friendRequestRepository;
     @Autowired
+    private FriendshipRepository friendshipRepository;
+    @Autowired
     private FriendRequestMapper friendRequestMapper;
     @Autowired
+    private PresenceAudienceIndex presenceAudienceIndex;
+    @Autowired
     @Lazy
     private ConversationService conversationService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     public ResponseEntity<?> sendFriendInvitation(UUID senderId, UUID receiverId) {
         User sender = userRepository.findById(senderId).orElseThrow(() -> new ResolutionException("User not found"));
@@ -59,10 +77,13 @@ public class FriendRequestService implements IFriendRequestService {
         friendRequestRepository.save(friendRequest);
         return ResponseEntity.ok().body(new ResponseObject(HttpStatus.ACCEPTED.value(), "Sent request successfully", friendRequest));
     }
+    // One transaction, so an ACCEPTED request never outlives a failed friendship or conversation write
+    @Transactional
     public ResponseEntity<?> changeFriendRequestStatus(Long requestId, SenderRequest senderRequest) {
         UUID senderId = senderRequest.getSenderId();
         FriendRequestStatus friendRequestStatus = FriendRequestStatus.valueOf(senderRequest.getFriendRequestStatus());
         FriendRequest friendRequest = friendRequestRepository.findById(requestId).orElseThrow(() -> new ResolutionException("Friend request not found"));
+        boolean wasAccepted = FriendRequestStatus.ACCEPTED.equals(friendRequest.getStatus());
 
         // Update the status
         friendRequest.setStatus(friendRequestStatus);
@@ -70,29 +91,93 @@ public class FriendRequestService implements IFriendRequestService {
         // Only create conversation and set friendship date if accepted
         if(friendRequestStatus.equals(FriendRequestStatus.ACCEPTED)) {
             friendRequest.setFriendshipDate(Instant.now());
+        }
+        friendRequestRepository.save(friendRequest);
+
+        if(friendRequestStatus.equals(FriendRequestStatus.ACCEPTED)) {
+            addFriendship(friendRequest.getSender(), friendRequest.getReceiver(), friendRequest.getFriendshipDate());
+            provisionConversation(friendRequest.getSender(), friendRequest.getReceiver());
+        } else if (wasAccepted) {
+            removeFriendship(friendRequest.getSender(), friendRequest.getReceiver());
+        }
 
-            User sender = friendRequest.getSender();
-            User receiver = friendRequest.getReceiver();
+        String message = "Change status to " + friendRequestStatus.name() + " successfully";
+        return ResponseEntity.ok().body(new ResponseObject(201, message));
+    }
+    // Both directions are stored so every friend lookup is keyed on user_id
+    private void addFriendship(User user, User friend, Instant since) {
+        Instant friendshipDate = since != null ? since : Instant.now();
+        if (!friendshipRepository.existsById(new FriendshipId(user.getId(), friend.getId()))) {
+            friendshipRepository.save(new Friendship(user, friend, friendshipDate));
+        }
+        if (!friendshipRepository.existsById(new FriendshipId(friend.getId(), user.getId()))) {
+            friendshipRepository.save(new Friendship(friend, user, friendshipDate));
+        }
+        presenceAudienceIndex.evict(List.of(user, friend));
+    }
 
-            List<UUID> participantIds = Arrays.asList(sender.getId(), receiver.getId());
-            boolean conversationExists = conversationService.participantsHasConversation(participantIds);
+    private void removeFriendship(User user, User friend) {
+        friendshipRepository.deleteBetween(user.getId(), friend.getId());
+        presenceAudienceIndex.evict(List.of(user, friend));
+    }
 
-            if (!conversationExists) {
-                ConversationRequest conversationRequest = ConversationRequest.builder()
-                        .participants(participantIds)
-                        .dateStarted(Instant.now())
-                        .build();
+    // The single place a direct conversation between two friends gets created
+    private void provisionConversation(User sender, User receiver) {
+        conversationService.provisionDirectConversation(Arrays.asList(sender.getId(), receiver.getId()));
+    }
 
-                conversationService.createConversation(conversationRequest);
+    /**
+     * Friendships accepted before the friendship table existed only live in friend_request, and
+     * friend lists used to create missing conversations on every read. Catches up every accepted
+     * request still missing its friendship rows, each in its own transaction, so one bad row is
+     * logged and skipped and an interrupted run picks up the rest on the next start.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillAcceptedFriendships() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long afterId = 0;
+        int backfilled = 0;
+        int failed = 0;
+        List<FriendRequest> page;
+        do {
+            page = friendRequestRepository.findWithoutFriendshipByStatus(FriendRequestStatus.ACCEPTED, afterId,
+                    Limit.of(PROVISION_PAGE_SIZE));
+            for (FriendRequest friendRequest : page) {
+                afterId = friendRequest.getId();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        addFriendship(friendRequest.getSender(), friendRequest.getReceiver(), friendRequest.getFriendshipDate());
+                        provisionConversation(friendRequest.getSender(), friendRequest.getReceiver());
+                    });
+                    backfilled++;
+                } catch (Exception e) {
+                    failed++;
+                    log.error("Failed to backfill friendship for request {}: {}", friendRequest.getId(), e.getMessage(), e);
+                }
             }
+        } while (page.size() == PROVISION_PAGE_SIZE);
+        if (backfilled > 0 || failed > 0) {
+            log.info("Backfilled {} accepted friendships, {} failed", backfilled, failed);
         }
+    }
 
-        String message = "Change status to " + friendRequestStatus.name() + " successfully";
-        return ResponseEntity.ok().body(new ResponseObject(201, message));
+    @Override
+    public List<User> findFriends(UUID userId) {
+        return friendshipRepository.findFriendsByUserId(userId);
+    }
+
+    @Override
+    public List<UUID> findFriendIds(UUID userId) {
+        return friendshipRepository.findFriendIdsByUserId(userId);
     }
+
+    @Override
+    public List<UUID> findPendingCounterpartIds(UUID userId) {
+        return friendRequestRepository.findCounterpartIdsByUserIdAndStatus(userId, FriendRequestStatus.PENDING);
+    }
+
     public boolean areFriends(User account1, User account2) {
-        return !friendRequestRepository.findBySenderAndReceiverAndStatus(account1, account2, FriendRequestStatus.ACCEPTED).isEmpty()
-                || !friendRequestRepository.findBySenderAndReceiverAndStatus(account2, account1, FriendRequestStatus.ACCEPTED).isEmpty();
+        return friendshipRepository.existsById(new FriendshipId(account1.getId(), account2.getId()));
     }
 
     @Override
@@ -127,6 +212,11 @@ public class FriendRequestService implements IFriendRequestService {
 
     @Override
     public void deleteFriendRequestById(Long requestId) {
-        friendRequestRepository.deleteById(requestId)       ;
+        friendRequestRepository.findById(requestId).ifPresent(friendRequest -> {
+            if (FriendRequestStatus.ACCEPTED.equals(friendRequest.getStatus())) {
+                removeFriendship(friendRequest.getSender(), friendRequest.getReceiver());
+            }
+            friendRequestRepository.delete(friendRequest);
+        });
     }
 }
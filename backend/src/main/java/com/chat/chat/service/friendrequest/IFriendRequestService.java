@@ -15,5 +15,8 @@ public interface IFriendRequestService {
     FriendRequest findByReceiver(User receiver);
     FriendRequest findFriendRequestById(Long id);
     List<FriendRequestDto> findFriendRequestsByUserId(UUID userId);
+    List<User> findFriends(UUID userId);
+    List<UUID> findFriendIds(UUID userId);
+    List<UUID> findPendingCounterpartIds(UUID userId);
     void deleteFriendRequestById(Long requestId);
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.chat.chat.service.presence;
+
+import java.util.Set;
+
+public interface IPresenceService {
+    boolean sessionOpened(String username);
+    boolean sessionClosed(String username);
+    void markOnline(String username);
+    void markOffline(String username);
+    boolean forceOffline(String username);
+    boolean isOnline(String username);
+    int getSessionCount(String username);
+    Set<String> getOnlineUsernames();
+    void flushPendingStates();
+}
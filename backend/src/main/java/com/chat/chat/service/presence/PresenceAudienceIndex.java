@@ -0,0 +1,62 @@
+package com.chat.chat.service.presence;
+
+import com.chat.chat.model.User;
+import com.chat.chat.repository.ConversationRepository;
+import com.chat.chat.repository.FriendshipRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who should hear about a user's presence: their friends plus everyone they share a conversation
+ * with. Entries are loaded on first use, dropped when the user goes offline, and evicted whenever
+ * a friendship or conversation membership involving the user changes.
+ */
+@Component
+@RequiredArgsConstructor
+public class PresenceAudienceIndex {
+    private final Map<String, Set<String>> contacts = new ConcurrentHashMap<>();
+    private final FriendshipRepository friendshipRepository;
+    private final ConversationRepository conversationRepository;
+
+    public Set<String> contactsOf(String username) {
+        Set<String> cached = contacts.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        Set<String> loaded = new HashSet<>(friendshipRepository.findFriendUsernamesByUsername(username));
+        loaded.addAll(conversationRepository.findContactUsernamesByUsername(username));
+        loaded.remove(username);
+        loaded.remove("system");
+        Set<String> snapshot = Set.copyOf(loaded);
+        Set<String> existing = contacts.putIfAbsent(username, snapshot);
+        return existing != null ? existing : snapshot;
+    }
+
+    public void evict(String username) {
+        contacts.remove(username);
+    }
+
+    // Inside a transaction the users are evicted again after commit, so a load racing the
+    // uncommitted change cannot leave the old contacts cached
+    public void evict(Collection<User> users) {
+        List<String> usernames = users.stream().map(User::getUsername).toList();
+        usernames.forEach(contacts::remove);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    usernames.forEach(contacts::remove);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.chat.chat.service.presence;
+
+import com.chat.chat.enums.NotificationType;
+import com.chat.chat.model.Notification;
+import com.chat.chat.payload.response.PresenceSnapshotResponse;
+import com.chat.chat.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Publishes presence as deltas, delivered only to the user's online friends and conversation
+ * partners. Transitions are collected for a short window and each recipient gets at most one
+ * PRESENCE_UPDATE per window listing who came ONLINE and who went OFFLINE, so a reconnect storm
+ * costs one message per recipient instead of one per transition. A user who drops and comes back
+ * inside the window produces nothing.
+ *
+ * Each recipient has its own sequence; a client that sees a gap (or has just connected) asks for
+ * a snapshot of its contacts.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PresenceBroadcaster {
+    public static final String PRESENCE_QUEUE = "/queue/presence";
+    private static final long MIN_WINDOW_MS = 50;
+    private static final long MAX_WINDOW_MS = 250;
+    private final Map<String, NotificationType> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Users whose last published state was ONLINE, to drop flaps that net out within a window
+    private final Set<String> announcedOnline = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    // Usernames never change, so ids resolved once stay valid
+    private final Map<String, UUID> userIds = new ConcurrentHashMap<>();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong eventsCoalesced = new AtomicLong();
+    private final AtomicLong updatesEmitted = new AtomicLong();
+    private final AtomicLong windowsFlushed = new AtomicLong();
+    private final PresenceService presenceService;
+    private final PresenceAudienceIndex audienceIndex;
+    private final UserRepository userRepository;
+    private final SimpMessagingTemplate template;
+    private final TaskScheduler taskScheduler;
+    @Value("${chat.presence.broadcast-window-ms:100}")
+    private long windowMs;
+
+    @PostConstruct
+    public void clampWindow() {
+        windowMs = Math.max(MIN_WINDOW_MS, Math.min(MAX_WINDOW_MS, windowMs));
+    }
+
+    public void publishOnline(String username) {
+        record(username, NotificationType.USER_ONLINE);
+    }
+
+    public void publishOffline(String username) {
+        record(username, NotificationType.USER_OFFLINE);
+    }
+
+    private void record(String username, NotificationType type) {
+        eventsReceived.incrementAndGet();
+        if (pending.put(username, type) != null) {
+            eventsCoalesced.incrementAndGet();
+        }
+        if (flushScheduled.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, Instant.now().plusMillis(windowMs));
+        }
+    }
+
+    private void flush() {
+        // Re-arm first: anything recorded from here on lands in the next window
+        flushScheduled.set(false);
+        Map<String, NotificationType> window = new HashMap<>();
+        for (Map.Entry<String, NotificationType> entry : pending.entrySet()) {
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                window.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (window.isEmpty()) {
+            return;
+        }
+        windowsFlushed.incrementAndGet();
+
+        Map<String, PresenceUpdate> updates = new LinkedHashMap<>();
+        List<String> wentOffline = new ArrayList<>();
+        window.forEach((username, type) -> {
+            boolean online = type == NotificationType.USER_ONLINE;
+            boolean changed = online ? announcedOnline.add(username) : announcedOnline.remove(username);
+            if (online && !changed) {
+                eventsCoalesced.incrementAndGet();
+                return;
+            }
+            UUID userId = resolveUserId(username);
+            if (userId == null) {
+                return;
+            }
+            for (String recipient : audienceIndex.contactsOf(username)) {
+                if (presenceService.isOnline(recipient)) {
+                    PresenceUpdate update = updates.computeIfAbsent(recipient, key -> new PresenceUpdate());
+                    (online ? update.online : update.offline).add(userId.toString());
+                }
+            }
+            if (!online) {
+                wentOffline.add(username);
+            }
+        });
+
+        updates.forEach(this::send);
+        // Their audience is reloaded on the next connect; their own stream restarts with a snapshot
+        wentOffline.forEach(username -> {
+            audienceIndex.evict(username);
+            sequences.remove(username);
+        });
+    }
+
+    private void send(String recipient, PresenceUpdate update) {
+        Notification notification = new Notification();
+        notification.setTime(Instant.now());
+        notification.setType(NotificationType.PRESENCE_UPDATE);
+        notification.addToMetadata("ONLINE", toIdList(update.online));
+        notification.addToMetadata("OFFLINE", toIdList(update.offline));
+        notification.addToMetadata("SEQUENCE", String.valueOf(sequenceOf(recipient).incrementAndGet()));
+        try {
+            template.convertAndSendToUser(recipient, PRESENCE_QUEUE, notification);
+            updatesEmitted.incrementAndGet();
+        } catch (Exception e) {
+            log.error("Failed to send presence update to {}: {}", recipient, e.getMessage());
+        }
+    }
+
+    public PresenceSnapshotResponse snapshot(String username) {
+        // Read the sequence first: a transition racing with this call is then replayed, never lost
+        long current = sequenceOf(username).get();
+        List<String> onlineContacts = audienceIndex.contactsOf(username).stream()
+                .filter(presenceService::isOnline)
+                .toList();
+        List<UUID> onlineUserIds = onlineContacts.isEmpty() ? List.of() :
+                userRepository.findIdsByUsernameIn(onlineContacts);
+        return PresenceSnapshotResponse.builder()
+                .sequence(current)
+                .onlineUserIds(onlineUserIds)
+                .build();
+    }
+
+    // Same ONLINE_USERS shape as before, sent only to the user who asked
+    public void sendSnapshot(String username) {
+        PresenceSnapshotResponse snapshot = snapshot(username);
+        Notification notification = new Notification();
+        notification.setTime(Instant.now());
+        notification.setType(NotificationType.ONLINE_USERS);
+        notification.addToMetadata("USERS", toIdList(snapshot.getOnlineUserIds().stream()
+                .map(UUID::toString)
+                .toList()));
+        notification.addToMetadata("SEQUENCE", String.valueOf(snapshot.getSequence()));
+        template.convertAndSendToUser(username, "/queue/messages", notification);
+    }
+
+    public Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("windowMs", windowMs);
+        metrics.put("eventsReceived", eventsReceived.get());
+        metrics.put("eventsCoalesced", eventsCoalesced.get());
+        metrics.put("windowsFlushed", windowsFlushed.get());
+        metrics.put("updatesEmitted", updatesEmitted.get());
+        return metrics;
+    }
+
+    private static String toIdList(List<String> ids) {
+        return ids.stream().collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    private AtomicLong sequenceOf(String username) {
+        return sequences.computeIfAbsent(username, key -> new AtomicLong());
+    }
+
+    private UUID resolveUserId(String username) {
+        UUID cached = userIds.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        UUID userId = userRepository.findIdByUsername(username);
+        if (userId != null) {
+            userIds.put(username, userId);
+        }
+        return userId;
+    }
+
+    private static class PresenceUpdate {
+        private final List<String> online = new ArrayList<>();
+        private final List<String> offline = new ArrayList<>();
+    }
+}
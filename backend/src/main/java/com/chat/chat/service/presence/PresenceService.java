@@ -0,0 +1,159 @@
+package com.chat.chat.service.presence;
+
+import com.chat.chat.enums.UserState;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks open WebSocket sessions per user in memory. Counts are updated with ConcurrentHashMap's
+ * per-key atomic operations, so connects and disconnects of different users never contend.
+ * State changes are persisted off the event path: the latest state per user is kept in a pending
+ * map and written to users.state / users.last_online in one JDBC batch per flush.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresenceService implements IPresenceService {
+    private static final String UPDATE_STATE_SQL = "UPDATE users SET state = ?, last_online = ? WHERE username = ?";
+    private final Map<String, Integer> sessionCounts = new ConcurrentHashMap<>();
+    private final Map<String, PendingState> pendingStates = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    @Autowired
+    @Qualifier("persistenceTaskScheduler")
+    private TaskScheduler taskScheduler;
+    @Value("${chat.presence.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Getter
+    @AllArgsConstructor
+    private static class PendingState {
+        private final UserState state;
+        private final Instant time;
+    }
+
+    @PostConstruct
+    public void scheduleFlush() {
+        taskScheduler.scheduleWithFixedDelay(this::flushPendingStates, Duration.ofMillis(flushIntervalMs));
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushPendingStates();
+    }
+
+    /**
+     * @return true when this is the user's first open session
+     */
+    @Override
+    public boolean sessionOpened(String username) {
+        return sessionCounts.merge(username, 1, Integer::sum) == 1;
+    }
+
+    /**
+     * @return true when this closed the user's last open session. The user is not marked offline
+     * here; callers decide whether to wait for a reconnect first.
+     */
+    @Override
+    public boolean sessionClosed(String username) {
+        boolean[] lastSession = {false};
+        sessionCounts.computeIfPresent(username, (key, sessions) -> {
+            if (sessions > 1) {
+                return sessions - 1;
+            }
+            lastSession[0] = true;
+            return null;
+        });
+        return lastSession[0];
+    }
+
+    @Override
+    public void markOnline(String username) {
+        pendingStates.put(username, new PendingState(UserState.ONLINE, Instant.now()));
+    }
+
+    // Skipped if the user reconnected in the meantime. The check and the put run under the user's
+    // sessionCounts entry, so a concurrent sessionOpened cannot slip in between them.
+    @Override
+    public void markOffline(String username) {
+        sessionCounts.compute(username, (key, sessions) -> {
+            if (sessions == null) {
+                pendingStates.put(username, new PendingState(UserState.OFFLINE, Instant.now()));
+            }
+            return sessions;
+        });
+    }
+
+    /**
+     * @return true if the user still had open sessions
+     */
+    @Override
+    public boolean forceOffline(String username) {
+        boolean wasOnline = sessionCounts.remove(username) != null;
+        pendingStates.put(username, new PendingState(UserState.OFFLINE, Instant.now()));
+        return wasOnline;
+    }
+
+    @Override
+    public boolean isOnline(String username) {
+        return sessionCounts.containsKey(username);
+    }
+
+    @Override
+    public int getSessionCount(String username) {
+        return sessionCounts.getOrDefault(username, 0);
+    }
+
+    @Override
+    public Set<String> getOnlineUsernames() {
+        return Collections.unmodifiableSet(sessionCounts.keySet());
+    }
+
+    @Override
+    public void flushPendingStates() {
+        if (pendingStates.isEmpty()) {
+            return;
+        }
+        Map<String, PendingState> drained = new HashMap<>();
+        for (Map.Entry<String, PendingState> entry : pendingStates.entrySet()) {
+            // Only drop the entry we read, so a newer state queued meanwhile waits for the next flush
+            if (pendingStates.remove(entry.getKey(), entry.getValue())) {
+                drained.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>(drained.size());
+        drained.forEach((username, pending) ->
+                batch.add(new Object[]{pending.getState().name(), LocalDateTime.ofInstant(pending.getTime(), ZoneOffset.UTC), username}));
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_STATE_SQL, batch);
+        } catch (Exception e) {
+            log.error("Failed to flush {} presence updates: {}", batch.size(), e.getMessage(), e);
+            // Retry next round unless a newer state has been queued since
+            drained.forEach(pendingStates::putIfAbsent);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.chat.chat.service.user;
 import com.chat.chat.enums.UserState;
 import com.chat.chat.model.User;
 import com.chat.chat.payload.response.FriendRequestResponse;
+import com.chat.chat.payload.response.UserPageResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -24,5 +25,5 @@ public interface IUserService {
     User updateNewPassword(UUID userId, String password);
 
     List<FriendRequestResponse> getFriendRequestList(UUID userId);
-    List<User> findNonFriendUsers(UUID userId);
+    UserPageResponse findNonFriendUsers(UUID userId, String q, UUID cursor, Integer limit);
 }
\ No newline at end of file
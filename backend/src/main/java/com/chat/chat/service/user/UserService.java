@@ -1,17 +1,19 @@
 package com.chat.chat.service.user;
 
-import com.chat.chat.dto.FriendRequestDto;
+import com.chat.chat.dto.UserSummaryDto;
 import com.chat.chat.enums.FriendRequestStatus;
 import com.chat.chat.enums.Role;
 import com.chat.chat.enums.UserState;
 import com.chat.chat.mapper.UserMapper;
 import com.chat.chat.model.Conversation;
 import com.chat.chat.model.User;
-import com.chat.chat.payload.request.ConversationRequest;
 import com.chat.chat.payload.response.FriendRequestResponse;
+import com.chat.chat.payload.response.UserPageResponse;
 import com.chat.chat.repository.ConversationRepository;
 import com.chat.chat.repository.UserRepository;
 import com.chat.chat.security.jwt.JwtUtils;
+import com.chat.chat.security.service.UserDetailsCache;
+import com.chat.chat.security.service.UserDetailsServiceImpl;
 import com.chat.chat.service.auth.AuthService;
 import com.chat.chat.service.conversation.ConversationService;
 import com.chat.chat.service.friendrequest.FriendRequestService;
@@ -21,6 +23,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -30,7 +33,6 @@ import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import jakarta.transaction.Transactional;
@@ -39,12 +41,16 @@ import jakarta.transaction.Transactional;
 @RequiredArgsConstructor
 public class UserService implements IUserService {
     private static final Log log = LogFactory.getLog(UserService.class);
+    private static final int DEFAULT_USER_PAGE_SIZE = 20;
+    private static final int MAX_USER_PAGE_SIZE = 100;
     private final PasswordEncoder passwordEncoder;
     private final AuthService authService;
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final ConversationRepository conversationRepository;
     private final JwtUtils jwtUtils;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final UserDetailsCache userDetailsCache;
     private final FriendRequestService friendRequestService;
 
     private ConversationService conversationService;
@@ -97,39 +103,26 @@ public class UserService implements IUserService {
     public UserDetails currentUser(HttpServletRequest request) {
         var jwt = jwtUtils.getJwtFromHeader(request);
         var email = jwtUtils.getEmailFromJwt(jwt);
-        User currentUser = userRepository.findByEmail(email);
-        if(currentUser != null){
-            return userMapper.toUserDetails(currentUser);
+        try {
+            return userDetailsService.loadUserByUsername(email);
+        } catch (UsernameNotFoundException e) {
+            return null;
         }
-        return null;
     }
 
     @Override
     public boolean deleteUserByEmail(String email) {
         User user = userRepository.findByEmail(email);
         userRepository.delete(user);
+        userDetailsCache.invalidate(user.getEmail(), user.getUsername());
+        jwtUtils.revokeUserTokens(user.getId());
         return !userRepository.existsByEmail(email);
     }
 
     @Override
     public List<User> getFriendList(UUID userId) {
-        User user = userRepository.findById(userId).orElse(null);
-        List<FriendRequestDto> friendRequests = friendRequestService.findFriendRequestsByUserId(userId);
-        List<FriendRequestDto> acceptedRequests = friendRequests.stream()
-                .filter(fr -> fr.getStatus().equals(FriendRequestStatus.ACCEPTED))
-                .toList();
-        for(FriendRequestDto requestDto : acceptedRequests) {
-            List<UUID> friendList = new ArrayList<>();
-            friendList.add(requestDto.getSender().getId());
-            friendList.add(requestDto.getReceiver().getId());
-            if(!conversationService.participantsHasConversation(friendList)) {
-                conversationService.createConversation(new ConversationRequest(Instant.now(),friendList));
-            }
-        }
-        return acceptedRequests.stream()
-                .map(request -> request.getReceiver().getId().equals(userId) ?
-                        request.getSender() : request.getReceiver())
-                .collect(Collectors.toList());
+        // Read only: direct conversations are provisioned when a request is accepted
+        return friendRequestService.findFriends(userId);
     }
 
     @Override
@@ -160,16 +153,19 @@ public class UserService implements IUserService {
             return null;
         }
         user.setPassword(passwordEncoder.encode(password));
+        userDetailsCache.invalidate(user.getEmail(), user.getUsername());
+        jwtUtils.revokeUserTokens(user.getId());
         return userRepository.save(user);
     }
 
     @Override
     public List<FriendRequestResponse> getFriendRequestList(UUID userId) {
-        List<FriendRequestDto> friendRequests = friendRequestService.findFriendRequestsByUserId(userId).stream().filter(friendRequest -> friendRequest.getReceiver().getId().equals(userId) && friendRequest.getStatus().equals(FriendRequestStatus.PENDING)).collect(Collectors.toList());
-        return friendRequests.stream().map(friendRequestDto -> FriendRequestResponse.builder()
-                .requestId(friendRequestDto.getId())
-                .sender(friendRequestDto.getSender())
-                .build()).distinct().toList();
+        User receiver = userRepository.getReferenceById(userId);
+        return friendRequestService.findByReceiverAndStatus(receiver, FriendRequestStatus.PENDING).stream()
+                .map(friendRequest -> FriendRequestResponse.builder()
+                        .requestId(friendRequest.getId())
+                        .sender(friendRequest.getSender())
+                        .build()).distinct().toList();
     }
 
     @Transactional
@@ -193,85 +189,40 @@ public class UserService implements IUserService {
     }
 
     @Override
-    public List<User> findNonFriendUsers(UUID userId) {
-        List<User> allUsers = findAllUser();
-        List<User> friends = getFriendList(userId);
-
-        Set<UUID> friendIds = friends.stream()
-                .map(User::getId)
-                .collect(Collectors.toSet());
-
-        List<FriendRequestDto> userFriendRequests = friendRequestService.findFriendRequestsByUserId(userId);
-
-        Set<UUID> pendingRequestUserIds = userFriendRequests.stream()
-                .filter(request -> request.getStatus() == FriendRequestStatus.PENDING)
-                .map(request -> {
-                    return userId.equals(request.getSender().getId()) ?
-                            request.getReceiver().getId() :
-                            request.getSender().getId();
-                })
-                .collect(Collectors.toSet());
-
-        return allUsers.stream()
-                .filter(user -> !user.getId().equals(userId) &&
-                        !friendIds.contains(user.getId()) &&
-                        !pendingRequestUserIds.contains(user.getId()) &&
-                        !"system".equalsIgnoreCase(user.getUsername()))
-                .collect(Collectors.toList());
-    }
-
-    public synchronized boolean decrementUserSessions(String username) {
-        User user = userRepository.findByUsername(username);
-
-        if (user == null) {
-            throw new UsernameNotFoundException("User not found: " + username);
+    public UserPageResponse findNonFriendUsers(UUID userId, String q, UUID cursor, Integer limit) {
+        int size = resolveUserPageSize(limit);
+        String prefix = escapeLike(q == null ? "" : q.trim()) + "%";
+        Limit fetch = Limit.of(size + 1);
+        List<UserSummaryDto> users;
+        if (cursor == null) {
+            users = userRepository.findNonFriends(userId, prefix, FriendRequestStatus.PENDING, fetch);
+        } else {
+            String cursorUsername = userRepository.findUsernameById(cursor);
+            if (cursorUsername == null) {
+                throw new IllegalArgumentException("Cursor user " + cursor + " not found");
+            }
+            users = userRepository.findNonFriendsAfter(userId, prefix, cursorUsername, cursor, FriendRequestStatus.PENDING, fetch);
         }
-
-        // Prevent sessions from going below 0
-        int currentSessions = Math.max(0, user.getSessions() - 1);
-        user.setSessions((byte) currentSessions);
-        userRepository.save(user);
-
-        log.info(username);
-        log.info(currentSessions);
-        return currentSessions == 0;
-    }
-
-    public synchronized void incrementUserSessions(String username) {
-        User user = userRepository.findByUsername(username);
-
-        if (user == null) {
-            throw new UsernameNotFoundException("User not found: " + username);
+        boolean hasMore = users.size() > size;
+        if (hasMore) {
+            users = users.subList(0, size);
         }
-
-        int newSessionCount = user.getSessions() + 1;
-        user.setSessions((byte) newSessionCount);
-        userRepository.save(user);
-
-        log.info(username);
-        log.info(newSessionCount);
-
+        return UserPageResponse.builder()
+                .users(users)
+                .nextCursor(hasMore ? users.get(users.size() - 1).getId() : null)
+                .hasMore(hasMore)
+                .build();
     }
 
-    public int getUserSessions(String username) {
-        User user = userRepository.findByUsername(username);
-
-        if (user == null) {
-            throw new UsernameNotFoundException("User not found: " + username);
+    private static int resolveUserPageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_USER_PAGE_SIZE;
         }
-        return user.getSessions();
+        return Math.min(limit, MAX_USER_PAGE_SIZE);
     }
 
-    public synchronized void resetUserSessions(String username) {
-        User user = userRepository.findByUsername(username);
-
-        if (user == null) {
-            throw new UsernameNotFoundException("User not found: " + username);
-        }
-
-        // Reset sessions to 0
-        user.setSessions((byte) 0);
-        userRepository.save(user);
-
+    // '!' is the ESCAPE character declared in the non-friend queries
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
     }
-}
\ No newline at end of file
+}
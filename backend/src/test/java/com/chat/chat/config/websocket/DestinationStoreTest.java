@@ -0,0 +1,78 @@
+package com.chat.chat.config.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DestinationStoreTest {
+    private final DestinationStore destinationStore = new DestinationStore();
+
+    @Test
+    void destinationStaysActiveUntilItsLastSessionLeaves() {
+        destinationStore.registerDestination("s1", "/topic/room", "alice");
+        destinationStore.registerDestination("s2", "/topic/room", "bob");
+
+        destinationStore.unregisterDestination("s1", "/topic/room", "alice");
+        assertThat(destinationStore.destinationIsActive("/topic/room")).isTrue();
+
+        destinationStore.unregisterDestination("s2", "/topic/room", "bob");
+        assertThat(destinationStore.destinationIsActive("/topic/room")).isFalse();
+        assertThat(destinationStore.getActiveDestinations()).isEmpty();
+    }
+
+    @Test
+    void unregisteringASessionDropsAllItsDestinations() {
+        destinationStore.registerDestination("s1", "/user/alice/queue/messages", "alice");
+        destinationStore.registerDestination("s1", "/topic/room", "alice");
+        destinationStore.registerDestination("s2", "/topic/room", "bob");
+
+        destinationStore.unregisterSession("s1");
+
+        assertThat(destinationStore.userDestinationIsActive("alice", "/queue/messages")).isFalse();
+        assertThat(destinationStore.getActiveDestinations()).containsOnlyKeys("/topic/room");
+        assertThat(destinationStore.getActiveDestinations().get("/topic/room")).containsExactly("s2");
+    }
+
+    @Test
+    void nullsAndUnknownSessionsAreIgnored() {
+        destinationStore.registerDestination(null, "/topic/room", "alice");
+        destinationStore.unregisterDestination("s1", "/topic/room", "alice");
+        destinationStore.unregisterSession("unknown");
+        destinationStore.unregisterSession(null);
+
+        assertThat(destinationStore.destinationIsActive(null)).isFalse();
+        assertThat(destinationStore.getActiveDestinations()).isEmpty();
+    }
+
+    @Test
+    void concurrentSubscribeAndUnsubscribeLeaveNoEmptyEntries() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String sessionId = "s" + i;
+                tasks.add(executor.submit(() -> {
+                    for (int j = 0; j < 1_000; j++) {
+                        destinationStore.registerDestination(sessionId, "/topic/room", "user");
+                        destinationStore.unregisterDestination(sessionId, "/topic/room", "user");
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(destinationStore.destinationIsActive("/topic/room")).isFalse();
+        assertThat(destinationStore.getActiveDestinations()).isEmpty();
+    }
+}
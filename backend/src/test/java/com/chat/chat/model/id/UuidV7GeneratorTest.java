@@ -0,0 +1,49 @@
+package com.chat.chat.model.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7GeneratorTest {
+
+    @Test
+    void idsAreVersion7WithTheCurrentTimestamp() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7Generator.next();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        // Counter overflow may borrow a millisecond or two ahead
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after + 2);
+    }
+
+    @Test
+    void idsAreStrictlyIncreasingAsUnsignedBytes() {
+        List<UUID> ids = new ArrayList<>();
+        // Well past the 4096 ids a single millisecond's counter can hold
+        for (int i = 0; i < 20_000; i++) {
+            ids.add(UuidV7Generator.next());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(Arrays.compareUnsigned(bytes(ids.get(i - 1)), bytes(ids.get(i))))
+                    .as("id %d sorts after id %d", i, i - 1)
+                    .isNegative();
+        }
+    }
+
+    private static byte[] bytes(UUID id) {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < 8; i++) {
+            bytes[i] = (byte) (id.getMostSignificantBits() >>> (56 - 8 * i));
+            bytes[8 + i] = (byte) (id.getLeastSignificantBits() >>> (56 - 8 * i));
+        }
+        return bytes;
+    }
+}
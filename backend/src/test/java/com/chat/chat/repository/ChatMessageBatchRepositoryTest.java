@@ -0,0 +1,77 @@
+package com.chat.chat.repository;
+
+import com.chat.chat.repository.ChatMessageBatchRepository.MessageRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageBatchRepositoryTest {
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @InjectMocks
+    private ChatMessageBatchRepository batchRepository;
+
+    private final UUID conversationId = UUID.randomUUID();
+    private final Instant now = Instant.parse("2026-10-18T12:00:00Z");
+
+    @Test
+    void pointerMovesToTheLatestDateSentRegardlessOfArrivalOrder() {
+        MessageRow newer = row(new UUID(1, 1), now.plusMillis(5));
+        MessageRow retried = row(new UUID(2, 2), now);
+
+        batchRepository.recordAll(List.of(newer, retried));
+
+        assertThat(lastMessageCandidates()).containsExactly(newer);
+    }
+
+    @Test
+    void sameDateSentIsBrokenByIdAsUnsignedBytes() {
+        // Negative as a signed long, but 0x80... sorts after 0x00... in a binary(16) column
+        MessageRow highBit = row(new UUID(Long.MIN_VALUE, 0), now);
+        MessageRow low = row(new UUID(1, 0), now);
+
+        batchRepository.recordAll(List.of(highBit, low));
+
+        assertThat(lastMessageCandidates()).containsExactly(highBit);
+    }
+
+    @Test
+    void oneCandidatePerConversation() {
+        UUID otherConversation = UUID.randomUUID();
+        MessageRow first = row(UUID.randomUUID(), now);
+        MessageRow other = MessageRow.builder().id(UUID.randomUUID()).conversationId(otherConversation).dateSent(now).build();
+
+        batchRepository.recordAll(List.of(first, other));
+
+        assertThat(lastMessageCandidates()).containsExactly(first, other);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<MessageRow> lastMessageCandidates() {
+        ArgumentCaptor<Collection<MessageRow>> rows = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(contains("last_message_id"), rows.capture(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        return rows.getValue();
+    }
+
+    private MessageRow row(UUID id, Instant dateSent) {
+        return MessageRow.builder().id(id).conversationId(conversationId).dateSent(dateSent).build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.chat.chat.repository;
+
+import com.chat.chat.model.id.UuidV7Generator;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Insert throughput of chat_message-shaped rows against a real MySQL: random (v4) against
+ * time-ordered (v7) binary(16) keys, and JDBC batches against one statement per row. Opt-in, as it
+ * needs Docker and takes a while:
+ * <pre>mvn test -Dtest=MessageInsertBenchmarkTest -Dchat.benchmark=true [-Dchat.benchmark.rows=200000]</pre>
+ * Results are logged as rows/s together with the table's data and index size, which is where the
+ * page splits from random keys show up.
+ */
+@EnabledIfSystemProperty(named = "chat.benchmark", matches = "true")
+@Testcontainers(disabledWithoutDocker = true)
+class MessageInsertBenchmarkTest {
+    private static final Logger log = LoggerFactory.getLogger(MessageInsertBenchmarkTest.class);
+    private static final int ROWS = Integer.getInteger("chat.benchmark.rows", 50_000);
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT = """
+            INSERT INTO bench_message (id, conversation_id, content, date_sent) VALUES (?, ?, ?, ?)
+            """;
+
+    @Container
+    private static final MySQLContainer<?> mysql = new MySQLContainer<>(DockerImageName.parse("mysql:latest"));
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    static void connect() {
+        // Same driver flag as the application, so batches are sent as multi-row inserts
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                mysql.getJdbcUrl() + "?rewriteBatchedStatements=true", mysql.getUsername(), mysql.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @BeforeEach
+    void createTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS bench_message");
+        jdbcTemplate.execute("""
+                CREATE TABLE bench_message (
+                    id binary(16) NOT NULL PRIMARY KEY,
+                    conversation_id binary(16) NOT NULL,
+                    content varchar(255),
+                    date_sent datetime(6) NOT NULL,
+                    KEY idx_bench_message_conversation (conversation_id, date_sent, id)
+                ) ENGINE=InnoDB
+                """);
+    }
+
+    @Test
+    void randomIdsBatched() {
+        run("v4 ids, batched", UUID::randomUUID, true);
+    }
+
+    @Test
+    void timeOrderedIdsBatched() {
+        run("v7 ids, batched", UuidV7Generator::next, true);
+    }
+
+    @Test
+    void timeOrderedIdsUnbatched() {
+        run("v7 ids, one statement per row", UuidV7Generator::next, false);
+    }
+
+    private void run(String label, Supplier<UUID> ids, boolean batched) {
+        List<UUID> conversations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            conversations.add(UUID.randomUUID());
+        }
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{bytes(ids.get()), bytes(conversations.get(i % conversations.size())),
+                    "message " + i, Timestamp.from(Instant.now())});
+        }
+
+        long started = System.nanoTime();
+        for (int from = 0; from < ROWS; from += BATCH_SIZE) {
+            List<Object[]> chunk = rows.subList(from, Math.min(from + BATCH_SIZE, ROWS));
+            // One transaction per chunk either way, so only the statement round trips differ
+            transactionTemplate.executeWithoutResult(status -> {
+                if (batched) {
+                    jdbcTemplate.batchUpdate(INSERT, chunk);
+                } else {
+                    chunk.forEach(row -> jdbcTemplate.update(INSERT, row));
+                }
+            });
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+
+        jdbcTemplate.execute("ANALYZE TABLE bench_message");
+        Map<String, Object> size = jdbcTemplate.queryForMap("""
+                SELECT data_length, index_length FROM information_schema.tables
+                WHERE table_schema = DATABASE() AND table_name = 'bench_message'
+                """);
+        log.info("{}: {} rows in {} ms ({} rows/s), data {} bytes, secondary indexes {} bytes", label, ROWS,
+                elapsedMillis, ROWS * 1000L / elapsedMillis, size.get("data_length"), size.get("index_length"));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bench_message", Long.class)).isEqualTo(ROWS);
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+}
@@ -0,0 +1,94 @@
+package com.chat.chat.security.jwt;
+
+import com.chat.chat.security.service.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtUtilsTest {
+    private final UserDetailsImpl alice = UserDetailsImpl.builder()
+            .id(UUID.randomUUID())
+            .username("alice")
+            .email("alice@example.com")
+            .authorities(List.of(new SimpleGrantedAuthority("USER")))
+            .build();
+    private TokenDenylist tokenDenylist;
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        tokenDenylist = new TokenDenylist();
+        ReflectionTestUtils.setField(tokenDenylist, "jwtExpirationMs", 60_000L);
+        jwtUtils = new JwtUtils(tokenDenylist);
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", Base64.getEncoder().encodeToString(new byte[32]));
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 60_000);
+        ReflectionTestUtils.setField(jwtUtils, "claimsCacheSize", 100);
+        jwtUtils.init();
+    }
+
+    @Test
+    void validTokenYieldsItsClaimsAndPrincipal() {
+        String token = tokenFor(alice);
+
+        Claims claims = jwtUtils.getValidClaims(token);
+
+        assertThat(claims.getSubject()).isEqualTo("alice@example.com");
+        UserDetails principal = jwtUtils.getUserDetails(claims);
+        assertThat(principal.getUsername()).isEqualTo("alice");
+        assertThat(principal.getAuthorities()).extracting(Object::toString).containsExactly("USER");
+    }
+
+    @Test
+    void repeatedValidationIsAnsweredFromTheClaimsCache() {
+        String token = tokenFor(alice);
+
+        jwtUtils.getValidClaims(token);
+        jwtUtils.getValidClaims(token);
+
+        assertThat(jwtUtils.getClaimsCacheMetrics()).containsEntry("hits", 1L).containsEntry("misses", 1L);
+    }
+
+    @Test
+    void revokedTokenIsRejectedEvenWhenCached() {
+        String token = tokenFor(alice);
+        jwtUtils.getValidClaims(token);
+
+        jwtUtils.revokeToken(token);
+
+        assertThat(jwtUtils.getValidClaims(token)).isNull();
+        assertThat(jwtUtils.validateJwtToken(token)).isFalse();
+    }
+
+    @Test
+    void tamperedOrEmptyTokensAreRejected() {
+        String token = tokenFor(alice);
+
+        assertThat(jwtUtils.getValidClaims(token.substring(0, token.length() - 2) + "xx")).isNull();
+        assertThat(jwtUtils.getValidClaims("")).isNull();
+        assertThat(jwtUtils.getValidClaims(null)).isNull();
+    }
+
+    @Test
+    void readsTheBearerTokenFromTheHeader() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer abc.def.ghi");
+
+        assertThat(jwtUtils.getJwtFromHeader(request)).isEqualTo("abc.def.ghi");
+        assertThat(jwtUtils.getJwtFromHeader(new MockHttpServletRequest())).isNull();
+    }
+
+    private String tokenFor(UserDetailsImpl user) {
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
@@ -0,0 +1,58 @@
+package com.chat.chat.security.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenDenylistTest {
+    private TokenDenylist tokenDenylist;
+
+    @BeforeEach
+    void setUp() {
+        tokenDenylist = new TokenDenylist();
+        ReflectionTestUtils.setField(tokenDenylist, "jwtExpirationMs", 60_000L);
+    }
+
+    @Test
+    void tokenIssuedInTheSameSecondAsTheRevocationStaysValid() {
+        tokenDenylist.revokeUser("user");
+        // iat as jjwt writes it: whole seconds, taken after the revocation
+        long now = System.currentTimeMillis();
+        Date issuedAt = new Date(now - now % 1000);
+
+        assertThat(tokenDenylist.isRevoked("hash", "user", issuedAt)).isFalse();
+    }
+
+    @Test
+    void tokenIssuedInAnEarlierSecondIsRevoked() {
+        long now = System.currentTimeMillis();
+        Date issuedAt = new Date(now - now % 1000 - 1000);
+
+        tokenDenylist.revokeUser("user");
+
+        assertThat(tokenDenylist.isRevoked("hash", "user", issuedAt)).isTrue();
+        assertThat(tokenDenylist.isRevoked("hash", "other", issuedAt)).isFalse();
+    }
+
+    @Test
+    void tokenWithoutIssuedAtIsRevokedWithItsUser() {
+        tokenDenylist.revokeUser("user");
+
+        assertThat(tokenDenylist.isRevoked("hash", "user", null)).isTrue();
+    }
+
+    @Test
+    void singleTokenIsRevokedUntilItExpires() {
+        tokenDenylist.revokeToken("expired", new Date(System.currentTimeMillis() - 1));
+        tokenDenylist.revokeToken("live", new Date(System.currentTimeMillis() + 60_000));
+
+        assertThat(tokenDenylist.isRevoked("live", "user", new Date())).isTrue();
+        assertThat(tokenDenylist.isRevoked("other", "user", new Date())).isFalse();
+        // The second call purged the entry for the already expired token
+        assertThat(tokenDenylist.size()).isEqualTo(1);
+    }
+}
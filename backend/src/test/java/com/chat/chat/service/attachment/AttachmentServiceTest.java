@@ -0,0 +1,208 @@
+package com.chat.chat.service.attachment;
+
+import com.chat.chat.model.Attachment;
+import com.chat.chat.payload.request.MessageRequest;
+import com.chat.chat.repository.AttachmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentServiceTest {
+    @Mock
+    private AttachmentRepository attachmentRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @TempDir
+    private Path dir;
+    private AttachmentService attachmentService;
+    private final UUID uploader = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        attachmentService = new AttachmentService(attachmentRepository, transactionManager);
+        ReflectionTestUtils.setField(attachmentService, "dir", dir.toString());
+        ReflectionTestUtils.setField(attachmentService, "maxSizeBytes", 64 * 1024L);
+        ReflectionTestUtils.setField(attachmentService, "urlSecret", "test-secret");
+        ReflectionTestUtils.setField(attachmentService, "urlTtlSeconds", 3600L);
+        attachmentService.init();
+    }
+
+    @Test
+    void storesTheDecodedTypeAndDimensionsUnderTheContentHash() throws IOException {
+        when(attachmentRepository.findById(any())).thenReturn(Optional.empty());
+        when(attachmentRepository.saveAndFlush(any())).thenAnswer(call -> call.getArgument(0));
+
+        Attachment attachment = attachmentService.store(new ByteArrayInputStream(image("png", 3, 2)), uploader);
+
+        assertThat(attachment.getId()).matches("[0-9a-f]{64}");
+        assertThat(attachment.getContentType()).isEqualTo("image/png");
+        assertThat(attachment.getWidth()).isEqualTo(3);
+        assertThat(attachment.getHeight()).isEqualTo(2);
+        assertThat(attachmentService.pathOf(attachment))
+                .isEqualTo(dir.resolve(attachment.getId().substring(0, 2)).resolve(attachment.getId().substring(2, 4))
+                        .resolve(attachment.getId()))
+                .exists();
+        verify(transactionManager).commit(any());
+        verify(attachmentRepository).addUploader(attachment.getId(), uploader);
+    }
+
+    @Test
+    void identicalBytesReuseTheStoredRow() throws IOException {
+        byte[] png = image("png", 3, 2);
+        when(attachmentRepository.findById(any())).thenReturn(Optional.empty());
+        when(attachmentRepository.saveAndFlush(any())).thenAnswer(call -> call.getArgument(0));
+        Attachment first = attachmentService.store(new ByteArrayInputStream(png), uploader);
+        when(attachmentRepository.findById(first.getId())).thenReturn(Optional.of(first));
+
+        Attachment second = attachmentService.store(new ByteArrayInputStream(png), uploader);
+
+        assertThat(second).isSameAs(first);
+        // Each upload of the bytes counts its uploader, even when the row already existed
+        verify(attachmentRepository, times(2)).addUploader(first.getId(), uploader);
+        verify(attachmentRepository, times(1)).saveAndFlush(any());
+        try (var files = Files.list(dir.resolve("tmp"))) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void concurrentInsertOfTheSameBytesReturnsTheWinner() throws IOException {
+        Attachment winner = Attachment.builder().id("winner").build();
+        when(attachmentRepository.findById(any())).thenReturn(Optional.empty(), Optional.of(winner));
+        when(attachmentRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("PRIMARY"));
+
+        assertThat(attachmentService.store(new ByteArrayInputStream(image("png", 1, 1)), uploader)).isSameAs(winner);
+        verify(transactionManager).rollback(any());
+    }
+
+    @Test
+    void rejectsScriptableAndUnlistedFormats() throws IOException {
+        byte[] svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"><script>alert(1)</script></svg>"
+                .getBytes(StandardCharsets.UTF_8);
+        assertThatThrownBy(() -> attachmentService.store(new ByteArrayInputStream(svg), uploader))
+                .isInstanceOf(IllegalArgumentException.class);
+        // Decodable, but not on the raster allowlist
+        byte[] wbmp = image("wbmp", 2, 2);
+        assertThatThrownBy(() -> attachmentService.store(new ByteArrayInputStream(wbmp), uploader))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(attachmentRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedUploads() {
+        assertThatThrownBy(() -> attachmentService.store(new ByteArrayInputStream(new byte[0]), uploader))
+                .hasMessageContaining("empty");
+        assertThatThrownBy(() -> attachmentService.store(new ByteArrayInputStream(new byte[64 * 1024 + 1]), uploader))
+                .hasMessageContaining("larger than");
+    }
+
+    @Test
+    void decodesBase64DataUrls() throws IOException {
+        when(attachmentRepository.findById(any())).thenReturn(Optional.empty());
+        when(attachmentRepository.saveAndFlush(any())).thenAnswer(call -> call.getArgument(0));
+        String dataUrl = "data:image/gif;base64," + Base64.getEncoder().encodeToString(image("gif", 4, 5));
+
+        Attachment attachment = attachmentService.storeDataUrl(dataUrl, uploader);
+
+        assertThat(attachment.getContentType()).isEqualTo("image/gif");
+        assertThat(attachment.getWidth()).isEqualTo(4);
+        assertThatThrownBy(() -> attachmentService.storeDataUrl("https://example.com/cat.png", uploader))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void messagesMayOnlyNameAttachmentsTheSenderUploadedOrCanAlreadySee() {
+        String id = "a".repeat(64);
+        Attachment attachment = Attachment.builder().id(id).build();
+        UUID stranger = UUID.randomUUID();
+        UUID member = UUID.randomUUID();
+        when(attachmentRepository.findById(id)).thenReturn(Optional.of(attachment));
+        when(attachmentRepository.isUploadedBy(eq(id), any())).thenAnswer(call -> uploader.equals(call.getArgument(1)));
+        when(attachmentRepository.isSharedWith(eq(id), any())).thenAnswer(call -> member.equals(call.getArgument(1)));
+
+        assertThat(attachmentService.resolveForMessage(request(id), uploader)).isSameAs(attachment);
+        assertThat(attachmentService.resolveForMessage(request(id), member)).isSameAs(attachment);
+        assertThatThrownBy(() -> attachmentService.resolveForMessage(request(id), stranger))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Attachment not found");
+    }
+
+    @Test
+    void inlineDataUrlIsMovedIntoTheStoreUnderTheSender() throws IOException {
+        when(attachmentRepository.findById(any())).thenReturn(Optional.empty());
+        when(attachmentRepository.saveAndFlush(any())).thenAnswer(call -> call.getArgument(0));
+        MessageRequest request = new MessageRequest("alice", UUID.randomUUID(), null,
+                "data:image/png;base64," + Base64.getEncoder().encodeToString(image("png", 1, 1)), null);
+
+        Attachment attachment = attachmentService.resolveForMessage(request, uploader);
+
+        assertThat(request.getImage()).isNull();
+        assertThat(request.getAttachmentId()).isEqualTo(attachment.getId());
+        verify(attachmentRepository).addUploader(attachment.getId(), uploader);
+    }
+
+    @Test
+    void signedUrlsVerifyOnlyForTheirOwnIdAndUntilTheyExpire() {
+        String id = "b".repeat(64);
+        UriComponents url = UriComponentsBuilder.fromUriString(attachmentService.urlOf(id)).build();
+        long expires = Long.parseLong(url.getQueryParams().getFirst("expires"));
+        String signature = url.getQueryParams().getFirst("signature");
+
+        assertThat(url.getPath()).isEqualTo("/api/attachments/" + id);
+        // Rounded up to whole windows: valid for at least one TTL and at most two
+        long now = Instant.now().getEpochSecond();
+        assertThat(expires % 3600).isZero();
+        assertThat(expires - now).isBetween(3600L, 7200L);
+        assertThat(attachmentService.urlOf(id)).isEqualTo(url.toUriString());
+
+        assertThat(attachmentService.isValidUrl(id, expires, signature)).isTrue();
+        assertThat(attachmentService.isValidUrl("c".repeat(64), expires, signature)).isFalse();
+        assertThat(attachmentService.isValidUrl(id, expires + 3600, signature)).isFalse();
+        assertThat(attachmentService.isValidUrl(id, expires, null)).isFalse();
+        assertThat(attachmentService.isValidUrl(id, null, signature)).isFalse();
+
+        // Correctly signed, but already expired
+        long past = now - 1;
+        String pastSignature = ReflectionTestUtils.invokeMethod(attachmentService, "sign", id, past);
+        assertThat(attachmentService.isValidUrl(id, past, pastSignature)).isFalse();
+    }
+
+    private static MessageRequest request(String attachmentId) {
+        return new MessageRequest("alice", UUID.randomUUID(), null, null, attachmentId);
+    }
+
+    private static byte[] image(String format, int width, int height) throws IOException {
+        int type = "wbmp".equals(format) ? BufferedImage.TYPE_BYTE_BINARY : BufferedImage.TYPE_INT_RGB;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(ImageIO.write(new BufferedImage(width, height, type), format, out)).isTrue();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,134 @@
+package com.chat.chat.service.chatmessage;
+
+import com.chat.chat.enums.NotificationType;
+import com.chat.chat.model.Notification;
+import com.chat.chat.repository.ChatMessageBatchRepository;
+import com.chat.chat.repository.ChatMessageBatchRepository.MessageRow;
+import com.chat.chat.service.chatmessage.BatchingMessageWriter.PendingMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchingMessageWriterTest {
+    @Mock
+    private ChatMessageBatchRepository batchRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+    private BatchingMessageWriter writer;
+
+    private final UUID conversationId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        writer = new BatchingMessageWriter(batchRepository, new TransactionTemplate(transactionManager), messagingTemplate);
+        ReflectionTestUtils.setField(writer, "batchSize", 200);
+    }
+
+    @Test
+    void committedBatchSendsOnePersistedReceiptPerSenderAndConversation() {
+        PendingMessage first = pending("alice");
+        PendingMessage second = pending("alice");
+        PendingMessage third = pending("bob");
+        List.of(first, second, third).forEach(writer::enqueue);
+
+        writer.flush();
+
+        verify(batchRepository).insertAll(List.of(first.getRow(), second.getRow(), third.getRow()));
+        verify(batchRepository).recordAll(List.of(first.getRow(), second.getRow(), third.getRow()));
+        Notification alice = receiptFor("alice");
+        assertThat(alice.getType()).isEqualTo(NotificationType.MESSAGE_PERSISTED);
+        assertThat(alice.getMetadata())
+                .containsEntry("CONVERSATION_ID", conversationId.toString())
+                .containsEntry("MESSAGE_IDS", "[" + first.getRow().getId() + ", " + second.getRow().getId() + "]");
+        assertThat(receiptFor("bob").getMetadata())
+                .containsEntry("MESSAGE_IDS", "[" + third.getRow().getId() + "]");
+        assertThat(writer.getMetrics()).containsEntry("persisted", 3L).containsEntry("queued", 0L);
+    }
+
+    @Test
+    void failedBatchIsRetriedRowByRowAndOnlyTheBadRowIsRequeued() {
+        PendingMessage good = pending("alice");
+        PendingMessage bad = pending("alice");
+        failInsertsOf(bad);
+        writer.enqueue(good);
+        writer.enqueue(bad);
+
+        writer.flush();
+
+        verify(batchRepository).insertAll(List.of(good.getRow()));
+        assertThat(receiptFor("alice").getMetadata())
+                .containsEntry("MESSAGE_IDS", "[" + good.getRow().getId() + "]");
+        // Requeued for the next round, not retried again within this flush
+        assertThat(bad.getAttempts()).isEqualTo(1);
+        assertThat(writer.getMetrics())
+                .containsEntry("persisted", 1L)
+                .containsEntry("retried", 1L)
+                .containsEntry("queued", 1L);
+    }
+
+    @Test
+    void rowThatKeepsFailingIsReportedAfterTheLastAttempt() {
+        PendingMessage bad = pending("alice");
+        failInsertsOf(bad);
+        writer.enqueue(bad);
+
+        for (int round = 0; round < 5; round++) {
+            writer.flush();
+        }
+
+        Notification receipt = receiptFor("alice");
+        assertThat(receipt.getType()).isEqualTo(NotificationType.MESSAGE_FAILED);
+        assertThat(receipt.getMetadata()).containsEntry("MESSAGE_IDS", "[" + bad.getRow().getId() + "]");
+        assertThat(writer.getMetrics())
+                .containsEntry("failed", 1L)
+                .containsEntry("retried", 4L)
+                .containsEntry("queued", 0L);
+
+        writer.flush();
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    private void failInsertsOf(PendingMessage bad) {
+        doAnswer(call -> {
+            List<MessageRow> rows = call.getArgument(0);
+            if (rows.contains(bad.getRow())) {
+                throw new IllegalStateException("constraint violation");
+            }
+            return null;
+        }).when(batchRepository).insertAll(anyList());
+    }
+
+    private Notification receiptFor(String username) {
+        ArgumentCaptor<Notification> receipt = ArgumentCaptor.forClass(Notification.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(username), eq("/queue/messages"), receipt.capture());
+        return receipt.getValue();
+    }
+
+    private PendingMessage pending(String sender) {
+        return new PendingMessage(MessageRow.builder()
+                .id(UUID.randomUUID())
+                .conversationId(conversationId)
+                .content("hi")
+                .dateSent(Instant.now())
+                .build(), sender);
+    }
+}
@@ -0,0 +1,137 @@
+package com.chat.chat.service.chatmessage;
+
+import com.chat.chat.dto.UserSummaryDto;
+import com.chat.chat.model.Attachment;
+import com.chat.chat.model.Message;
+import com.chat.chat.model.User;
+import com.chat.chat.payload.request.MessageRequest;
+import com.chat.chat.payload.response.MessageImportResponse;
+import com.chat.chat.repository.ChatMessageBatchRepository;
+import com.chat.chat.repository.ChatMessageBatchRepository.MessageRow;
+import com.chat.chat.repository.ChatMessageRepository;
+import com.chat.chat.repository.ConversationRepository;
+import com.chat.chat.service.attachment.IAttachmentService;
+import com.chat.chat.service.conversation.ConversationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageServiceTest {
+    @Mock
+    private ChatMessageRepository messageRepository;
+    @Mock
+    private IAttachmentService attachmentService;
+    @Mock
+    private ConversationRepository conversationRepository;
+    @Mock
+    private ConversationService conversationService;
+    @Mock
+    private ChatMessageBatchRepository batchRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    @InjectMocks
+    private ChatMessageService chatMessageService;
+
+    @Test
+    void migratesInlineImagesUnderTheirSender() throws IOException {
+        User sender = User.builder().id(UUID.randomUUID()).build();
+        Message message = Message.builder().id(UUID.randomUUID()).sender(sender).image("data:image/png;base64,AAAA").build();
+        Attachment attachment = Attachment.builder().id("hash").width(4).height(3).build();
+        when(messageRepository.findInlineImagesAfter(new UUID(0, 0), Limit.of(100))).thenReturn(List.of(message));
+        when(attachmentService.storeDataUrl(message.getImage(), sender.getId())).thenReturn(attachment);
+
+        chatMessageService.migrateInlineImages();
+
+        verify(messageRepository).moveImageToAttachment(message.getId(), "hash", 4, 3);
+    }
+
+    @Test
+    void keepsGoingPastImagesThatCannotBeStored() throws IOException {
+        User sender = User.builder().id(UUID.randomUUID()).build();
+        Message broken = Message.builder().id(new UUID(0, 1)).sender(sender).image("data:broken").build();
+        Message valid = Message.builder().id(new UUID(0, 2)).sender(sender).image("data:image/png;base64,AAAA").build();
+        when(messageRepository.findInlineImagesAfter(new UUID(0, 0), Limit.of(100))).thenReturn(List.of(broken, valid));
+        when(attachmentService.storeDataUrl(broken.getImage(), sender.getId()))
+                .thenThrow(new IllegalArgumentException("Only base64 data URLs are supported"));
+        when(attachmentService.storeDataUrl(valid.getImage(), sender.getId()))
+                .thenReturn(Attachment.builder().id("hash").build());
+
+        chatMessageService.migrateInlineImages();
+
+        verify(messageRepository, never()).moveImageToAttachment(eq(broken.getId()), any(), any(), any());
+        verify(messageRepository).moveImageToAttachment(valid.getId(), "hash", null, null);
+    }
+
+    @Test
+    void importStoresInlineImagesAsTheImportersAttachments() throws IOException {
+        UUID conversationId = UUID.randomUUID();
+        UUID aliceId = UUID.randomUUID();
+        UUID bobId = UUID.randomUUID();
+        when(conversationRepository.findParticipantSummariesById(conversationId)).thenReturn(List.of(
+                UserSummaryDto.builder().id(aliceId).username("alice").build(),
+                UserSummaryDto.builder().id(bobId).username("bob").build()));
+        when(attachmentService.resolveForMessage(any(), eq(aliceId))).thenAnswer(invocation -> {
+            MessageRequest request = invocation.getArgument(0);
+            if (request.getImage() == null || !request.getImage().startsWith("data:")) {
+                return null;
+            }
+            if (request.getImage().contains("broken")) {
+                throw new IllegalArgumentException("Invalid image data: not an image");
+            }
+            request.setImage(null);
+            request.setAttachmentId("hash");
+            return Attachment.builder().id("hash").width(4).height(3).build();
+        });
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        ReflectionTestUtils.setField(chatMessageService, "importBatchSize", 1000);
+        String ndjson = String.join("\n",
+                "{\"sender\":\"bob\",\"image\":\"data:image/png;base64,AAAA\"}",
+                "{\"sender\":\"bob\",\"image\":\"data:broken\"}",
+                "{\"sender\":\"bob\",\"image\":\"" + "x".repeat(256) + "\"}",
+                "{\"sender\":\"bob\",\"content\":\"hi\"}");
+
+        MessageImportResponse response = chatMessageService.importMessages(conversationId, "alice",
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(response.getImported()).isEqualTo(2);
+        assertThat(response.getErrors()).containsExactly(
+                "line 2: Invalid image data: not an image",
+                "line 3: image longer than 255 characters");
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<MessageRow>> rows = ArgumentCaptor.forClass(List.class);
+        verify(batchRepository).insertAll(rows.capture());
+        MessageRow image = rows.getValue().get(0);
+        assertThat(image.getSenderId()).isEqualTo(bobId);
+        assertThat(image.getImage()).isNull();
+        assertThat(image.getAttachmentId()).isEqualTo("hash");
+        assertThat(image.getAttachmentWidth()).isEqualTo(4);
+        assertThat(rows.getValue().get(1).getContent()).isEqualTo("hi");
+    }
+}
@@ -0,0 +1,172 @@
+package com.chat.chat.service.conversation;
+
+import com.chat.chat.dto.ConversationSummaryDto;
+import com.chat.chat.dto.ParticipantSummaryDto;
+import com.chat.chat.mapper.ChatMessageMapper;
+import com.chat.chat.mapper.ConversationMapper;
+import com.chat.chat.model.Conversation;
+import com.chat.chat.model.Message;
+import com.chat.chat.model.User;
+import com.chat.chat.payload.request.ConversationRequest;
+import com.chat.chat.payload.response.ConversationResponse;
+import com.chat.chat.payload.response.MessageResponse;
+import com.chat.chat.repository.ChatMessageRepository;
+import com.chat.chat.repository.ConversationRepository;
+import com.chat.chat.service.presence.PresenceAudienceIndex;
+import com.chat.chat.service.user.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationServiceTest {
+    @Mock
+    private ConversationRepository conversationRepository;
+    @Mock
+    private ConversationMapper conversationMapper;
+    @Mock
+    private PresenceAudienceIndex presenceAudienceIndex;
+    @Mock
+    private ConversationMembershipCache membershipCache;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+    @Mock
+    private ChatMessageMapper messageMapper;
+    @Mock
+    private UserService userService;
+    @InjectMocks
+    private ConversationService conversationService;
+
+    private final User alice = User.builder().id(UUID.randomUUID()).username("alice").build();
+    private final User bob = User.builder().id(UUID.randomUUID()).username("bob").build();
+    private final List<UUID> participantIds = List.of(alice.getId(), bob.getId());
+    private final String participantKey = Conversation.participantKeyOf(participantIds);
+
+    @Test
+    void provisionReturnsTheExistingConversationWithoutInserting() {
+        Conversation existing = conversation();
+        when(conversationRepository.findByParticipantKey(participantKey)).thenReturn(Optional.of(existing));
+
+        assertThat(conversationService.provisionDirectConversation(participantIds)).isSameAs(existing);
+        verify(conversationRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void provisionInsertsInItsOwnTransactionAndEvictsCaches() {
+        Conversation created = conversation();
+        when(conversationRepository.findByParticipantKey(participantKey)).thenReturn(Optional.empty());
+        when(conversationMapper.mapConversationRequest(any())).thenReturn(created);
+        when(conversationRepository.saveAndFlush(created)).thenReturn(created);
+
+        assertThat(conversationService.provisionDirectConversation(participantIds)).isSameAs(created);
+        verify(transactionManager).commit(any());
+        verify(presenceAudienceIndex).evict(created.getParticipants());
+        verify(membershipCache).evict(created.getId());
+    }
+
+    @Test
+    void provisionReturnsTheWinnerWhenAConcurrentInsertTakesTheKey() {
+        Conversation loser = conversation();
+        Conversation winner = conversation();
+        when(conversationRepository.findByParticipantKey(participantKey))
+                .thenReturn(Optional.empty(), Optional.of(winner));
+        when(conversationMapper.mapConversationRequest(any())).thenReturn(loser);
+        when(conversationRepository.saveAndFlush(loser))
+                .thenThrow(new DataIntegrityViolationException("uk_conversation_participant_key"));
+
+        assertThat(conversationService.provisionDirectConversation(participantIds)).isSameAs(winner);
+        // Only the inner transaction is rolled back; the caller's can still commit
+        verify(transactionManager).rollback(any());
+        verify(membershipCache, never()).evict(any(UUID.class));
+    }
+
+    @Test
+    void createConversationMapsTheSavedConversationWithTheInjectedMapper() {
+        Conversation created = conversation();
+        ConversationResponse response = ConversationResponse.builder().id(created.getId()).build();
+        ConversationRequest request = ConversationRequest.builder().participants(participantIds).build();
+        when(conversationRepository.existsByParticipantKey(participantKey)).thenReturn(false);
+        when(conversationMapper.mapConversationRequest(request)).thenReturn(created);
+        when(conversationRepository.saveAndFlush(created)).thenReturn(created);
+        when(conversationMapper.apply(created)).thenReturn(response);
+
+        assertThat(conversationService.createConversation(request)).isSameAs(response);
+    }
+
+    @Test
+    void createConversationReturnsNullWhenItLosesTheRace() {
+        Conversation loser = conversation();
+        ConversationRequest request = ConversationRequest.builder().participants(participantIds).build();
+        when(conversationRepository.existsByParticipantKey(participantKey)).thenReturn(false);
+        when(conversationMapper.mapConversationRequest(request)).thenReturn(loser);
+        when(conversationRepository.saveAndFlush(loser))
+                .thenThrow(new DataIntegrityViolationException("uk_conversation_participant_key"));
+
+        assertThat(conversationService.createConversation(request)).isNull();
+        verify(conversationMapper, never()).apply(any());
+    }
+
+    @Test
+    void summariesKeepQueryOrderAndGetTheirParticipantsAttached() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(conversationRepository.findConversationSummariesByUserId(alice.getId())).thenReturn(List.of(
+                ConversationSummaryDto.builder().id(first).build(),
+                ConversationSummaryDto.builder().id(second).build()));
+        when(conversationRepository.findParticipantSummaries(any())).thenReturn(List.of(
+                ParticipantSummaryDto.builder().conversationId(second).id(bob.getId()).build(),
+                ParticipantSummaryDto.builder().conversationId(first).id(alice.getId()).build()));
+
+        List<ConversationSummaryDto> summaries = conversationService.getConversationSummariesByUserId(alice.getId());
+
+        assertThat(summaries).extracting(ConversationSummaryDto::getId).containsExactly(first, second);
+        assertThat(summaries.get(0).getParticipants()).extracting(ParticipantSummaryDto::getId).containsExactly(alice.getId());
+        assertThat(summaries.get(1).getParticipants()).extracting(ParticipantSummaryDto::getId).containsExactly(bob.getId());
+    }
+
+    @Test
+    void listingHistoriesAreLoadedInOneQueryAndGroupedByConversation() {
+        Conversation first = conversation();
+        Conversation second = conversation();
+        Message a = message(first);
+        Message b = message(second);
+        Message c = message(first);
+        when(chatMessageRepository.findMessagesByConversationIdIn(List.of(first.getId(), second.getId())))
+                .thenReturn(List.of(a, b, c));
+        when(messageMapper.apply(any(Message.class)))
+                .thenAnswer(call -> MessageResponse.builder().id(call.<Message>getArgument(0).getId()).build());
+
+        Map<UUID, List<MessageResponse>> messages =
+                conversationService.getMessagesByConversationIds(List.of(first.getId(), second.getId()));
+
+        assertThat(messages.get(first.getId())).extracting(MessageResponse::getId).containsExactly(a.getId(), c.getId());
+        assertThat(messages.get(second.getId())).extracting(MessageResponse::getId).containsExactly(b.getId());
+        verify(chatMessageRepository, never()).findMessagesByConversationId(any());
+    }
+
+    private static Message message(Conversation conversation) {
+        Message message = new Message();
+        message.setId(UUID.randomUUID());
+        message.setConversation(conversation);
+        return message;
+    }
+
+    private Conversation conversation() {
+        return Conversation.builder().id(UUID.randomUUID()).participants(List.of(alice, bob)).build();
+    }
+}
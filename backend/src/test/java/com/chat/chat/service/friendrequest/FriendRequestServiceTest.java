@@ -0,0 +1,134 @@
+package com.chat.chat.service.friendrequest;
+
+import com.chat.chat.enums.FriendRequestStatus;
+import com.chat.chat.model.FriendRequest;
+import com.chat.chat.model.Friendship;
+import com.chat.chat.model.User;
+import com.chat.chat.payload.request.SenderRequest;
+import com.chat.chat.repository.FriendRequestRepository;
+import com.chat.chat.repository.FriendshipRepository;
+import com.chat.chat.repository.UserRepository;
+import com.chat.chat.service.conversation.ConversationService;
+import com.chat.chat.service.presence.PresenceAudienceIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FriendRequestServiceTest {
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private FriendRequestRepository friendRequestRepository;
+    @Mock
+    private FriendshipRepository friendshipRepository;
+    @Mock
+    private PresenceAudienceIndex presenceAudienceIndex;
+    @Mock
+    private ConversationService conversationService;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @InjectMocks
+    private FriendRequestService friendRequestService;
+
+    @Test
+    void acceptingWritesBothFriendshipEdgesAndProvisionsTheConversation() {
+        User sender = user("alice");
+        User receiver = user("bob");
+        FriendRequest request = request(1L, sender, receiver, FriendRequestStatus.PENDING);
+        when(friendRequestRepository.findById(1L)).thenReturn(Optional.of(request));
+
+        friendRequestService.changeFriendRequestStatus(1L,
+                new SenderRequest(sender.getId(), FriendRequestStatus.ACCEPTED.name(), null));
+
+        assertThat(request.getStatus()).isEqualTo(FriendRequestStatus.ACCEPTED);
+        assertThat(request.getFriendshipDate()).isNotNull();
+        ArgumentCaptor<Friendship> friendships = ArgumentCaptor.forClass(Friendship.class);
+        verify(friendshipRepository, times(2)).save(friendships.capture());
+        assertThat(friendships.getAllValues())
+                .extracting(f -> f.getId().getUserId() + ">" + f.getId().getFriendId())
+                .containsExactly(sender.getId() + ">" + receiver.getId(), receiver.getId() + ">" + sender.getId());
+        verify(conversationService).provisionDirectConversation(List.of(sender.getId(), receiver.getId()));
+    }
+
+    @Test
+    void acceptFailsWhenTheConversationCannotBeProvisioned() {
+        User sender = user("alice");
+        User receiver = user("bob");
+        when(friendRequestRepository.findById(1L))
+                .thenReturn(Optional.of(request(1L, sender, receiver, FriendRequestStatus.PENDING)));
+        when(conversationService.provisionDirectConversation(any())).thenThrow(new IllegalStateException("boom"));
+
+        // Propagates so the surrounding transaction rolls the status and friendship back
+        assertThatThrownBy(() -> friendRequestService.changeFriendRequestStatus(1L,
+                        new SenderRequest(sender.getId(), FriendRequestStatus.ACCEPTED.name(), null)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void backfillSkipsAFailingRequestAndContinues() {
+        User alice = user("alice");
+        User bob = user("bob");
+        User carol = user("carol");
+        FriendRequest broken = request(3L, alice, bob, FriendRequestStatus.ACCEPTED);
+        FriendRequest fine = request(7L, alice, carol, FriendRequestStatus.ACCEPTED);
+        when(friendRequestRepository.findWithoutFriendshipByStatus(eq(FriendRequestStatus.ACCEPTED), anyLong(), any(Limit.class)))
+                .thenReturn(List.of(broken, fine));
+        when(conversationService.provisionDirectConversation(List.of(alice.getId(), bob.getId())))
+                .thenThrow(new IllegalStateException("boom"));
+
+        friendRequestService.backfillAcceptedFriendships();
+
+        verify(conversationService).provisionDirectConversation(List.of(alice.getId(), carol.getId()));
+        // The failed request is rolled back on its own; the next one still commits
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void backfillWalksPagesByIdUntilAShortPage() {
+        User alice = user("alice");
+        List<FriendRequest> fullPage = new ArrayList<>();
+        for (long id = 1; id <= 500; id++) {
+            fullPage.add(request(id, alice, user("friend" + id), FriendRequestStatus.ACCEPTED));
+        }
+        when(friendRequestRepository.findWithoutFriendshipByStatus(eq(FriendRequestStatus.ACCEPTED), anyLong(), any(Limit.class)))
+                .thenReturn(fullPage, List.of());
+
+        friendRequestService.backfillAcceptedFriendships();
+
+        verify(friendRequestRepository).findWithoutFriendshipByStatus(eq(FriendRequestStatus.ACCEPTED), eq(0L), any(Limit.class));
+        verify(friendRequestRepository).findWithoutFriendshipByStatus(eq(FriendRequestStatus.ACCEPTED), eq(500L), any(Limit.class));
+        verify(conversationService, times(500)).provisionDirectConversation(any());
+    }
+
+    private static User user(String username) {
+        return User.builder().id(UUID.randomUUID()).username(username).build();
+    }
+
+    private static FriendRequest request(long id, User sender, User receiver, FriendRequestStatus status) {
+        FriendRequest request = new FriendRequest();
+        request.setId(id);
+        request.setSender(sender);
+        request.setReceiver(receiver);
+        request.setStatus(status);
+        return request;
+    }
+}
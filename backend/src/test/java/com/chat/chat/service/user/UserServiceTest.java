@@ -0,0 +1,102 @@
+package com.chat.chat.service.user;
+
+import com.chat.chat.dto.UserSummaryDto;
+import com.chat.chat.enums.FriendRequestStatus;
+import com.chat.chat.model.User;
+import com.chat.chat.payload.response.UserPageResponse;
+import com.chat.chat.repository.UserRepository;
+import com.chat.chat.service.conversation.ConversationService;
+import com.chat.chat.service.friendrequest.FriendRequestService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserServiceTest {
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private FriendRequestService friendRequestService;
+    @Mock
+    private ConversationService conversationService;
+    @InjectMocks
+    private UserService userService;
+
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void friendListIsAPureRead() {
+        List<User> friends = List.of(User.builder().id(UUID.randomUUID()).username("bob").build());
+        when(friendRequestService.findFriends(userId)).thenReturn(friends);
+        // Setter-injected, so @InjectMocks leaves it out of the constructor
+        userService.setConversationService(conversationService);
+
+        assertThat(userService.getFriendList(userId)).isEqualTo(friends);
+
+        verifyNoInteractions(conversationService, userRepository);
+        verify(friendRequestService).findFriends(userId);
+        verifyNoMoreInteractions(friendRequestService);
+    }
+
+    @Test
+    void likeWildcardsInTheQueryMatchLiterally() {
+        userService.findNonFriendUsers(userId, " 50%_off! ", null, 10);
+
+        verify(userRepository).findNonFriends(userId, "50!%!_off!!%", FriendRequestStatus.PENDING, Limit.of(11));
+    }
+
+    @Test
+    void missingQueryMatchesEveryUsername() {
+        userService.findNonFriendUsers(userId, null, null, null);
+
+        verify(userRepository).findNonFriends(userId, "%", FriendRequestStatus.PENDING, Limit.of(21));
+    }
+
+    @Test
+    void extraRowMeansAnotherPageFromTheLastReturnedUser() {
+        List<UserSummaryDto> rows = List.of(user("ann"), user("bea"), user("cy"));
+        when(userRepository.findNonFriends(eq(userId), eq("%"), any(), eq(Limit.of(3)))).thenReturn(rows);
+
+        UserPageResponse page = userService.findNonFriendUsers(userId, "", null, 2);
+
+        assertThat(page.getUsers()).extracting(UserSummaryDto::getUsername).containsExactly("ann", "bea");
+        assertThat(page.isHasMore()).isTrue();
+        assertThat(page.getNextCursor()).isEqualTo(rows.get(1).getId());
+    }
+
+    @Test
+    void cursorResumesAfterItsUsername() {
+        UUID cursor = UUID.randomUUID();
+        when(userRepository.findUsernameById(cursor)).thenReturn("bea");
+
+        UserPageResponse page = userService.findNonFriendUsers(userId, "b", cursor, 2);
+
+        verify(userRepository).findNonFriendsAfter(userId, "b%", "bea", cursor, FriendRequestStatus.PENDING, Limit.of(3));
+        assertThat(page.isHasMore()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void unknownCursorIsRejected() {
+        UUID cursor = UUID.randomUUID();
+
+        assertThatThrownBy(() -> userService.findNonFriendUsers(userId, "", cursor, 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static UserSummaryDto user(String username) {
+        return UserSummaryDto.builder().id(UUID.randomUUID()).username(username).build();
+    }
+}
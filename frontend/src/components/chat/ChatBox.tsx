@@ -48,6 +48,7 @@ const ChatBox = ({ conversationId }: { conversationId: string | null }) => {
   const chatContainerRef = useRef<HTMLDivElement>(null)
   const messagesEndRef = useRef<HTMLDivElement>(null)
   const previousScrollHeight = useRef<number>(0)
+  const presenceSequence = useRef<number>(0)
 
   const isStompConnected = stompClient?.connected || false
 
@@ -143,6 +144,9 @@ const ChatBox = ({ conversationId }: { conversationId: string | null }) => {
             })
             setOnlineMembers(filteredUsers)
           }
+          if (parsedMessage.metadata.SEQUENCE) {
+            presenceSequence.current = Number(parsedMessage.metadata.SEQUENCE)
+          }
         } catch (error) {
           console.error("Error parsing online users:", error)
         }
@@ -192,6 +196,39 @@ const ChatBox = ({ conversationId }: { conversationId: string | null }) => {
     }
   })
 
+  // Merged presence deltas; on a sequence gap ask the server for a fresh snapshot
+  useSubscription("/user/" + currentUser.username + "/queue/presence", (message) => {
+    try {
+      const parsedMessage = JSON.parse(message.body)
+      if (parsedMessage.type !== "PRESENCE_UPDATE") return
+
+      const sequence = Number(parsedMessage.metadata.SEQUENCE)
+      if (sequence <= presenceSequence.current) return
+      if (presenceSequence.current > 0 && sequence > presenceSequence.current + 1 && stompClient) {
+        stompClient.publish({ destination: "/app/presence.snapshot", body: "" })
+      }
+      presenceSequence.current = sequence
+
+      const parseIds = (value?: string): string[] =>
+        value ? value.slice(1, -1).split(",").map((id) => id.trim()).filter(Boolean) : []
+      const cameOnline = parseIds(parsedMessage.metadata.ONLINE)
+      const wentOffline = parseIds(parsedMessage.metadata.OFFLINE)
+      const participants: IUser[] = (conversation?.participants ?? []).map(
+        (participant: any) => participant.user || participant,
+      )
+
+      setOnlineMembers((prev) => {
+        const next = prev.filter((user) => !wentOffline.includes(user.id))
+        participants
+          .filter((user) => cameOnline.includes(user.id) && !next.some((member) => member.id === user.id))
+          .forEach((user) => next.push(user))
+        return next
+      })
+    } catch (error) {
+      console.error("Error parsing presence update:", error)
+    }
+  })
+
   useSubscription("/user/" + currentUser.username + "/private-messages", (message) => {
     try {
       const parsedMessage = JSON.parse(message.body)
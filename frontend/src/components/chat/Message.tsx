@@ -6,6 +6,7 @@ import Image from "next/image"
 import MessageTooltip from "../MessageTooltip"
 import { getTimeAgo } from "@/utils"
 import type { IMessageResponse } from "@/interfaces"
+import axiosClient from "@/configs/axiosClient"
 
 type MessageItem = {
   message: IMessageResponse
@@ -43,10 +44,13 @@ const Message = (props: MessageItem) => {
     }
   }
 
+  // Attachments are served by the API from a signed, expiring URL; older messages may still carry an image URL inline
+  const imageSrc = message.attachmentUrl
+    ? new URL(message.attachmentUrl, axiosClient.defaults.baseURL).toString()
+    : message.image
+
   const shouldDisplayImage = () => {
-    return (
-      message.image && typeof message.image === "string" && message.image.trim() !== "" && isValidUrl(message.image)
-    )
+    return imageSrc && typeof imageSrc === "string" && imageSrc.trim() !== "" && isValidUrl(imageSrc)
   }
 
   const getAvatarFallback = (user: any) => {
@@ -118,9 +122,10 @@ const Message = (props: MessageItem) => {
           {shouldDisplayImage() && (
             <Box sx={{ mt: 1 }}>
               <Image
-                src={message.image! || "/placeholder.svg"}
-                width={300}
-                height={300}
+                src={imageSrc || "/placeholder.svg"}
+                width={message.attachmentWidth || 300}
+                height={message.attachmentHeight || 300}
+                unoptimized
                 alt="shared image"
                 style={{
                   maxWidth: "100%",
@@ -167,9 +172,10 @@ const Message = (props: MessageItem) => {
         {shouldDisplayImage() && (
           <Box sx={{ mt: 1 }}>
             <Image
-              src={message.image! || "/placeholder.svg"}
-              width={300}
-              height={300}
+              src={imageSrc || "/placeholder.svg"}
+              width={message.attachmentWidth || 300}
+              height={message.attachmentHeight || 300}
+              unoptimized
               alt="shared image"
               style={{
                 maxWidth: "100%",
@@ -2,9 +2,9 @@
 
 import type React from "react"
 
-import { useState } from "react"
-import { useQuery, useQueryClient } from "@tanstack/react-query"
-import { Card, CardHeader, CardContent, Typography, Box } from "@mui/material"
+import { useEffect, useState } from "react"
+import { useInfiniteQuery, useQuery, useQueryClient } from "@tanstack/react-query"
+import { Card, CardHeader, CardContent, Typography, Box, TextField, Button, CircularProgress } from "@mui/material"
 import { IoPeopleSharp, IoPersonAdd, IoMailOpen } from "react-icons/io5"
 import { useAuthContext } from "@/context/useAuthContext"
 import { fetchFriendListApi, fetchFriendRequestListApi, fetchNonFriendUsersApi } from "@/services/user"
@@ -20,6 +20,14 @@ const FriendList = () => {
   const [tabValue, setTabValue] = useState(0)
   const { theme } = useThemeContext()
   const queryClient = useQueryClient()
+  const [searchInput, setSearchInput] = useState("")
+  const [search, setSearch] = useState("")
+
+  // Wait for typing to settle before querying by prefix
+  useEffect(() => {
+    const timer = setTimeout(() => setSearch(searchInput.trim()), 300)
+    return () => clearTimeout(timer)
+  }, [searchInput])
 
   const { data: friendListData, isLoading: friendsLoading, refetch: refetchFriends } = useQuery({
     queryKey: ["friendList"],
@@ -37,9 +45,18 @@ const FriendList = () => {
     refetchOnWindowFocus: true,
   })
 
-  const { data: nonFriendUsersData, isLoading: usersLoading, refetch: refetchNonFriends } = useQuery({
-    queryKey: ["nonFriendUsers"],
-    queryFn: () => fetchNonFriendUsersApi(currentUser?.id, currentUser?.token),
+  const {
+    data: nonFriendUsersData,
+    isLoading: usersLoading,
+    refetch: refetchNonFriends,
+    fetchNextPage,
+    hasNextPage,
+    isFetchingNextPage,
+  } = useInfiniteQuery({
+    queryKey: ["nonFriendUsers", search],
+    queryFn: ({ pageParam }) => fetchNonFriendUsersApi(currentUser?.id, currentUser?.token, search, pageParam),
+    initialPageParam: undefined as string | undefined,
+    getNextPageParam: (lastPage) => (lastPage?.data?.hasMore ? lastPage.data.nextCursor : undefined),
     enabled: !!currentUser?.id,
     staleTime: 0, // Always consider data stale
     refetchOnWindowFocus: true,
@@ -50,8 +67,8 @@ const FriendList = () => {
                     Array.isArray(friendListData) ? friendListData : []
   const friendRequestList = Array.isArray(friendRequestListData?.data) ? friendRequestListData.data : 
                            Array.isArray(friendRequestListData) ? friendRequestListData : []
-  const nonFriendUsers = Array.isArray(nonFriendUsersData?.data) ? nonFriendUsersData.data : 
-                        Array.isArray(nonFriendUsersData) ? nonFriendUsersData : []
+  const nonFriendUsers = (nonFriendUsersData?.pages ?? []).flatMap((page: any) =>
+                        Array.isArray(page?.data?.users) ? page.data.users : [])
 
   const handleChange = (_event: React.SyntheticEvent, newValue: number) => {
     setTabValue(newValue)
@@ -186,10 +203,24 @@ const FriendList = () => {
 
         {/* Find Friends Tab */}
         <TabPanel value={tabValue} index={2}>
+          <Box sx={{ px: 2, pt: 2 }}>
+            <TextField
+              fullWidth
+              size="small"
+              value={searchInput}
+              onChange={(e) => setSearchInput(e.target.value)}
+              placeholder="Search by username..."
+              sx={{
+                "& .MuiOutlinedInput-root": {
+                  borderRadius: 2,
+                },
+              }}
+            />
+          </Box>
           {usersLoading ? (
             renderLoadingSkeleton()
           ) : nonFriendUsers.length === 0 ? (
-            renderEmptyState("No users to add", <IoPersonAdd size={48} />)
+            renderEmptyState(search ? "No users found" : "No users to add", <IoPersonAdd size={48} />)
           ) : (
             <Box sx={{ p: 2 }}>
               {nonFriendUsers.map((user: any, index: number) => (
@@ -199,6 +230,13 @@ const FriendList = () => {
                   currentUserId={currentUser?.id} 
                 />
               ))}
+              {hasNextPage && (
+                <Box sx={{ display: "flex", justifyContent: "center", mt: 1 }}>
+                  <Button onClick={() => fetchNextPage()} disabled={isFetchingNextPage} sx={{ color: theme.primary }}>
+                    {isFetchingNextPage ? <CircularProgress size={20} /> : "Load more"}
+                  </Button>
+                </Box>
+              )}
             </Box>
           )}
         </TabPanel>
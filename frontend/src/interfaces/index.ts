@@ -80,12 +80,17 @@ export interface IMessageResponse {
     states: MessageState[];
     content: string;
     image?: string;
+    attachmentId?: string;
+    attachmentUrl?: string;
+    attachmentWidth?: number;
+    attachmentHeight?: number;
 }
 export interface IMessageReq {
     username: string;
     conversationId: string;
     content: string;
     image?: string | any;
+    attachmentId?: string;
 }
 export interface IConversationDto {
     id: string; 
@@ -115,6 +120,9 @@ export interface ITheme {
 type NotificationType =
     | "USER_STATE"
     | "ONLINE_USERS"
+    | "PRESENCE_UPDATE"
+    | "MESSAGE_PERSISTED"
+    | "MESSAGE_FAILED"
     | "INCOMING_MESSAGE"
     | "INCOMING_CALL"
     | "REJECTED_CALL"
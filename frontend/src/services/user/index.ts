@@ -35,11 +35,15 @@ export const changeFriendRequestStatusApi = async (requestId: string, sendReq: I
     }
 }
 
-export const fetchNonFriendUsersApi = async (userId: string, token: string) => {
+export const fetchNonFriendUsersApi = async (userId: string, token: string, q?: string, cursor?: string) => {
     try {
         const response = await axiosClient.get("/user/non-friends/" + userId, {
             headers: {
                 authorization: `Bearer ${token}`
+            },
+            params: {
+                q: q || undefined,
+                cursor: cursor || undefined
             }
         });
         return response.data